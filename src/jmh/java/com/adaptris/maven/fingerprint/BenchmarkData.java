@@ -0,0 +1,130 @@
+package com.adaptris.maven.fingerprint;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.monitor.logging.DefaultLog;
+import org.codehaus.plexus.logging.Logger;
+import org.codehaus.plexus.logging.console.ConsoleLogger;
+
+/**
+ * Synthetic content shared by the benchmarks.
+ */
+final class BenchmarkData {
+
+  private static final int ASSETS_PER_DIRECTORY = 50;
+
+  private BenchmarkData() {
+  }
+
+  /**
+   * @return a JSP like page containing the given number of links, spread over the default patterns
+   */
+  static String page(int links) {
+    StringBuilder page = new StringBuilder(links * 120);
+    page.append("<%@ page contentType=\"text/html;charset=UTF-8\" %>\n<!DOCTYPE html>\n<html>\n<head>\n");
+    for (int i = 0; i < links; i++) {
+      switch (i % 6) {
+      case 0:
+        page.append("  <link rel=\"stylesheet\" href=\"css/style").append(i).append(".css\" />\n");
+        break;
+      case 1:
+        page.append("  <script type=\"text/javascript\" src=\"/js/script").append(i).append(".js\"></script>\n");
+        break;
+      case 2:
+        page.append("  <div class=\"item\"><img alt=\"image\" src=\"images/image").append(i).append(".png\" /></div>\n");
+        break;
+      case 3:
+        page.append("  <div style=\"background: url('../images/bg").append(i).append(".png')\">text</div>\n");
+        break;
+      case 4:
+        page.append("  <c:url value=\"/favicon").append(i).append(".ico\" var=\"faviconUrl\"/>\n");
+        break;
+      default:
+        page.append("  <script>ko.components.register('c', { template: { fromUrl: 'component").append(i)
+            .append(".tmpl.html' } });</script>\n");
+        break;
+      }
+    }
+    page.append("</head>\n<body>\n  <p>Lorem ipsum dolor sit amet, consectetur adipiscing elit.</p>\n</body>\n</html>\n");
+    return page.toString();
+  }
+
+  /**
+   * Writes a file of the given size, random bytes for binary extensions and text otherwise.
+   */
+  static File file(File directory, String name, int size) throws IOException {
+    File file = new File(directory, name);
+    byte[] content = new byte[size];
+    Random random = new Random(size);
+    if (Utils.isTextFile(file)) {
+      byte[] line = "var value = 'Lorem ipsum dolor sit amet, consectetur adipiscing elit';\r\n"
+          .getBytes(StandardCharsets.UTF_8);
+      for (int i = 0; i < size; i++) {
+        content[i] = line[i % line.length];
+      }
+    } else {
+      random.nextBytes(content);
+    }
+    FileUtils.writeByteArrayToFile(file, content);
+    return file;
+  }
+
+  /**
+   * Generates a webapp made of html pages, each one referencing css, js and images of the webapp.
+   */
+  static void webapp(File directory, int pages, int assets) throws IOException {
+    FileUtils.deleteDirectory(directory);
+    for (int i = 0; i < assets; i++) {
+      String assetDirectory = "assets" + i / ASSETS_PER_DIRECTORY + "/";
+      file(directory, assetDirectory + "css/style" + i + ".css", 4 * 1024);
+      file(directory, assetDirectory + "js/script" + i + ".js", 16 * 1024);
+      file(directory, assetDirectory + "images/image" + i + ".png", 32 * 1024);
+    }
+    Random random = new Random(pages);
+    for (int i = 0; i < pages; i++) {
+      StringBuilder page = new StringBuilder("<!DOCTYPE html>\n<html>\n<head>\n");
+      for (int link = 0; link < 20; link++) {
+        int asset = random.nextInt(assets);
+        String assetDirectory = "../assets" + asset / ASSETS_PER_DIRECTORY + "/";
+        page.append("  <link rel=\"stylesheet\" href=\"").append(assetDirectory).append("css/style").append(asset)
+            .append(".css\" />\n");
+        page.append("  <script src=\"").append(assetDirectory).append("js/script").append(asset)
+            .append(".js\"></script>\n");
+        page.append("  <img src=\"").append(assetDirectory).append("images/image").append(asset).append(".png\" />\n");
+        page.append("  <a href=\"http://www.example.com/page").append(link).append("\">link</a>\n");
+      }
+      page.append("</head>\n<body>\n  <p>Lorem ipsum dolor sit amet.</p>\n</body>\n</html>\n");
+      FileUtils.writeStringToFile(new File(directory, "pages" + i / 100 + "/page" + i + ".html"), page.toString(),
+          StandardCharsets.UTF_8);
+    }
+  }
+
+  /**
+   * @param workDirectory
+   *          null to disable the incremental build
+   */
+  static FingerprintMojo mojo(File sourceDirectory, File targetDirectory, File workDirectory) throws Exception {
+    FingerprintMojo mojo = new FingerprintMojo();
+    mojo.setLog(new DefaultLog(new ConsoleLogger(Logger.LEVEL_ERROR, "benchmark")));
+    set(mojo, "sourceDirectory", sourceDirectory);
+    set(mojo, "targetDirectory", targetDirectory);
+    set(mojo, "workDirectory", workDirectory);
+    set(mojo, "includes", Arrays.asList("**/*.html", "**/*.css", "**/*.js"));
+    set(mojo, "excludes", Collections.emptyList());
+    set(mojo, "excludeResources", Arrays.asList("://", "//", "data:"));
+    return mojo;
+  }
+
+  static void set(FingerprintMojo mojo, String name, Object value) throws Exception {
+    Field field = FingerprintMojo.class.getDeclaredField(name);
+    field.setAccessible(true);
+    field.set(mojo, value);
+  }
+}
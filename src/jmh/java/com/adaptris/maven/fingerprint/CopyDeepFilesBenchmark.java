@@ -0,0 +1,65 @@
+package com.adaptris.maven.fingerprint;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Copy of the files which are not processed from the source to the target directory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class CopyDeepFilesBenchmark {
+
+  @Param({ "100", "1000" })
+  private int assets;
+
+  private File directory;
+  private File sourceDirectory;
+  private File targetDirectory;
+  private FingerprintMojo mojo;
+
+  @Setup
+  public void setUp() throws Exception {
+    directory = Files.createTempDirectory("copy-benchmark").toFile();
+    sourceDirectory = new File(directory, "source");
+    BenchmarkData.webapp(sourceDirectory, 0, assets);
+  }
+
+  @Setup(Level.Invocation)
+  public void cleanTarget() throws Exception {
+    targetDirectory = new File(directory, "target");
+    FileUtils.deleteDirectory(targetDirectory);
+    mojo = BenchmarkData.mojo(sourceDirectory, targetDirectory, null);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    FileUtils.deleteDirectory(directory);
+  }
+
+  @Benchmark
+  public void copyDeepFiles() throws Exception {
+    mojo.copyDeepFiles(sourceDirectory, targetDirectory);
+  }
+}
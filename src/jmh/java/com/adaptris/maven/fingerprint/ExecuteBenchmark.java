@@ -0,0 +1,82 @@
+package com.adaptris.maven.fingerprint;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End to end execution of the generate goal over a generated webapp.
+ * <p>
+ * The size of the webapp is configurable with <code>-Djmh.args="ExecuteBenchmark -p pages=5000"</code>. With
+ * incremental set, the previous build is kept so what is measured is a build without any change.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ExecuteBenchmark {
+
+  @Param({ "1000" })
+  private int pages;
+
+  @Param({ "500" })
+  private int assets;
+
+  @Param({ "false", "true" })
+  private boolean incremental;
+
+  private File directory;
+  private File sourceDirectory;
+  private File targetDirectory;
+  private File workDirectory;
+  private FingerprintMojo mojo;
+
+  @Setup
+  public void setUp() throws Exception {
+    directory = Files.createTempDirectory("execute-benchmark").toFile();
+    sourceDirectory = new File(directory, "source");
+    targetDirectory = new File(directory, "target");
+    workDirectory = new File(directory, "work");
+    BenchmarkData.webapp(sourceDirectory, pages, assets);
+    if (incremental) {
+      BenchmarkData.mojo(sourceDirectory, targetDirectory, workDirectory).execute();
+    }
+  }
+
+  @Setup(Level.Invocation)
+  public void prepare() throws Exception {
+    if (!incremental) {
+      FileUtils.deleteDirectory(targetDirectory);
+    }
+    mojo = BenchmarkData.mojo(sourceDirectory, targetDirectory, incremental ? workDirectory : null);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    FileUtils.deleteDirectory(directory);
+  }
+
+  @Benchmark
+  public void execute() throws Exception {
+    mojo.execute();
+  }
+}
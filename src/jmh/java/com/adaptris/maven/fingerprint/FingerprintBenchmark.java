@@ -0,0 +1,63 @@
+package com.adaptris.maven.fingerprint;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Fingerprint of small, medium and large text and binary files, with each hash algorithm.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx256m")
+public class FingerprintBenchmark {
+
+  @Param({ "4096", "1048576", "67108864" })
+  private int size;
+
+  @Param({ "js", "png" })
+  private String extension;
+
+  @Param({ "md5", "sha-256", "crc32c", "xxhash32" })
+  private String algorithm;
+
+  private File directory;
+  private File file;
+  private HashAlgorithm hashAlgorithm;
+
+  @Setup
+  public void setUp() throws IOException, MojoExecutionException {
+    hashAlgorithm = HashAlgorithm.parse(algorithm);
+    directory = Files.createTempDirectory("fingerprint-benchmark").toFile();
+    file = BenchmarkData.file(directory, "file." + extension, size);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    FileUtils.deleteDirectory(directory);
+  }
+
+  @Benchmark
+  public String generateFingerprint() throws MojoExecutionException {
+    return Utils.generateFingerprint(file, hashAlgorithm);
+  }
+}
@@ -0,0 +1,70 @@
+package com.adaptris.maven.fingerprint;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the single pass {@link LinkRewriter} with the former one pass per pattern loop.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LinkRewriterBenchmark {
+
+  private static final List<Pattern> DEFAULT_PATTERNS = Arrays.asList(FingerprintMojo.LINK_PATTERN,
+      FingerprintMojo.SCRIPT_PATTERN, FingerprintMojo.IMG_PATTERN, FingerprintMojo.CSS_IMG_PATTERN,
+      FingerprintMojo.JSTL_URL_PATTERN, FingerprintMojo.FROM_URL_PATTERN);
+
+  private static final LinkRewriter.LinkHandler FINGERPRINT = link -> link + "?0dde3d756e6a436c0b2ff85433038729";
+
+  @Param({ "100", "5000" })
+  private int links;
+
+  private String page;
+  private LinkRewriter rewriter;
+
+  @Setup
+  public void setUp() throws MojoExecutionException {
+    page = BenchmarkData.page(links);
+    rewriter = new LinkRewriter(DEFAULT_PATTERNS);
+  }
+
+  @Benchmark
+  public String singlePass() throws MojoExecutionException {
+    return rewriter.rewrite(page, FINGERPRINT).toString();
+  }
+
+  @Benchmark
+  public String onePassPerPattern() throws MojoExecutionException {
+    StringBuffer output = new StringBuffer(page);
+    for (Pattern pattern : DEFAULT_PATTERNS) {
+      String data = output.toString();
+      output = new StringBuffer();
+      Matcher m = pattern.matcher(data);
+      while (m.find()) {
+        m.appendReplacement(output, "$1" + FINGERPRINT.handle(m.group(2)) + "$3");
+      }
+      m.appendTail(output);
+    }
+    return output.toString();
+  }
+}
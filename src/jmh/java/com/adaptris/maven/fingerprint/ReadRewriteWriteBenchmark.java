@@ -0,0 +1,79 @@
+package com.adaptris.maven.fingerprint;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reads, rewrites and writes a large generated page, comparing the decoded buffer and streaming encoder with the
+ * String based path. Run with <code>-prof gc</code> to compare the allocations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReadRewriteWriteBenchmark {
+
+  private static final LinkRewriter.LinkHandler FINGERPRINT = link -> link + "?0dde3d756e6a436c0b2ff85433038729";
+
+  // about 100 bytes per link
+  @Param({ "500", "30000" })
+  private int links;
+
+  private File directory;
+  private File source;
+  private File target;
+  private LinkRewriter rewriter;
+
+  @Setup
+  public void setUp() throws IOException, MojoExecutionException {
+    directory = Files.createTempDirectory("rewrite-benchmark").toFile();
+    source = new File(directory, "page.jsp");
+    target = new File(directory, "target.jsp");
+    FileUtils.writeStringToFile(source, BenchmarkData.page(links), StandardCharsets.UTF_8);
+    rewriter = new LinkRewriter(Arrays.asList(FingerprintMojo.LINK_PATTERN, FingerprintMojo.SCRIPT_PATTERN,
+        FingerprintMojo.IMG_PATTERN, FingerprintMojo.CSS_IMG_PATTERN, FingerprintMojo.JSTL_URL_PATTERN,
+        FingerprintMojo.FROM_URL_PATTERN));
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    FileUtils.deleteDirectory(directory);
+  }
+
+  @Benchmark
+  public boolean charBuffer() throws MojoExecutionException, IOException {
+    try (TargetWriter writer = new TargetWriter(target, false)) {
+      rewriter.rewriteTo(Utils.readChars(source), FINGERPRINT, writer);
+      writer.finish();
+      return writer.isWritten();
+    }
+  }
+
+  @Benchmark
+  public boolean string() throws MojoExecutionException, IOException {
+    String data = Utils.readFile(source);
+    FileUtils.writeStringToFile(target, rewriter.rewrite(data, FINGERPRINT).toString(), StandardCharsets.UTF_8);
+    return true;
+  }
+}
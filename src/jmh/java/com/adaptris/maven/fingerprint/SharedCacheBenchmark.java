@@ -0,0 +1,69 @@
+package com.adaptris.maven.fingerprint;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Digest of a file found in a directory shared cache under each key, against the fingerprint computed without it:
+ * a hit only pays off when the key is cheaper than the fingerprint.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx256m")
+public class SharedCacheBenchmark {
+
+  @Param({ "4096", "1048576", "16777216" })
+  private int size;
+
+  @Param({ "content", "file" })
+  private String key;
+
+  private File directory;
+  private File file;
+  private FingerprintCache cache;
+  private FingerprintCache.KeyMode keyMode;
+
+  @Setup
+  public void setUp() throws IOException, MojoExecutionException {
+    directory = Files.createTempDirectory("shared-cache-benchmark").toFile();
+    file = BenchmarkData.file(directory, "file.png", size);
+    keyMode = FingerprintCache.KeyMode.parse(key);
+    cache = new DirectoryFingerprintCache(new File(directory, "cache"));
+    cache.putDigest("md5/binary/" + keyMode.key(file), Utils.generateFingerprint(file, HashAlgorithm.MD5));
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    FileUtils.deleteDirectory(directory);
+  }
+
+  @Benchmark
+  public String hit() throws IOException {
+    return cache.getDigest("md5/binary/" + keyMode.key(file));
+  }
+
+  @Benchmark
+  public String miss() throws MojoExecutionException {
+    return Utils.generateFingerprint(file, HashAlgorithm.MD5);
+  }
+}
@@ -0,0 +1,89 @@
+package com.adaptris.maven.fingerprint;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Rewrites minified single line pages with the tokenizers of the default patterns or with their regular
+ * expressions.
+ * <p>
+ * The regular expressions are quadratic on the pages with tags lacking what they look for, run them on small sizes
+ * only: <code>-Djmh.args="SingleLineBenchmark -p size=65536"</code>.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SingleLineBenchmark {
+
+  private static final List<Pattern> DEFAULT_PATTERNS = Arrays.asList(FingerprintMojo.LINK_PATTERN,
+      FingerprintMojo.SCRIPT_PATTERN, FingerprintMojo.IMG_PATTERN, FingerprintMojo.CSS_IMG_PATTERN,
+      FingerprintMojo.JSTL_URL_PATTERN, FingerprintMojo.FROM_URL_PATTERN);
+
+  private static final LinkRewriter.LinkHandler FINGERPRINT = link -> link + "?0dde3d756e6a436c0b2ff85433038729";
+
+  /**
+   * minified: the benchmark page on a single line. links: link tags without href. images: img tags whose src holds a
+   * template expression.
+   */
+  @Param({ "minified", "links", "images" })
+  private String page;
+
+  @Param({ "5242880" })
+  private int size;
+
+  private String data;
+  private LinkRewriter tokenizers;
+  private LinkRewriter regex;
+
+  @Setup
+  public void setUp() throws MojoExecutionException {
+    String content;
+    switch (page) {
+    case "links":
+      content = "<link rel=\"preload\" as=\"font\" crossorigin>";
+      break;
+    case "images":
+      content = "<img alt=\"\" src=\"{{item.image}}\">";
+      break;
+    default:
+      content = BenchmarkData.page(600).replace("\n", "");
+      break;
+    }
+    StringBuilder line = new StringBuilder(size + content.length());
+    while (line.length() < size) {
+      line.append(content);
+    }
+    data = line.toString();
+    tokenizers = new LinkRewriter(DEFAULT_PATTERNS);
+    regex = new LinkRewriter(DEFAULT_PATTERNS, false);
+  }
+
+  @Benchmark
+  public CharSequence tokenizers() throws MojoExecutionException {
+    return tokenizers.rewrite(data, FINGERPRINT);
+  }
+
+  @Benchmark
+  public CharSequence regex() throws MojoExecutionException {
+    return regex.rewrite(data, FINGERPRINT);
+  }
+}
@@ -0,0 +1,163 @@
+package com.adaptris.maven.fingerprint;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * Fingerprinted resources of the build, keyed by their path relative to the source directory, so that an application
+ * can resolve the fingerprinted URL of a resource without scanning anything.
+ * <p>
+ * The json format is an object with one entry per line:
+ * <code>"css/style.css": {"path": "css/style.css?hash", "fingerprint": "hash", "size": 1024}</code>. The binary
+ * format is readable with a {@link java.io.DataInputStream}: the <code>FPM1</code> magic, the number of entries as an
+ * int, then for each entry the path, the fingerprinted path and the fingerprint as modified UTF-8 followed by the size
+ * as a long. The fingerprint is the digest of the resource truncated to the <code>fingerprintLength</code>. Entries
+ * are written as they are added, sorted by path in both formats so the same build gives the same manifest.
+ * </p>
+ */
+public class AssetManifest implements Closeable {
+
+  private static final byte[] MAGIC = { 'F', 'P', 'M', '1' };
+
+  private final File file;
+  private final File tmp;
+  private final Format format;
+  private final OutputStream os;
+  private final Writer writer;
+  private final DataOutputStream out;
+  private String separator = "\n";
+  private String lastPath;
+  private int remaining;
+  private boolean committed;
+
+  /**
+   * Starts writing the manifest to a temporary file, so that a reader never sees a partial manifest.
+   *
+   * @param size
+   *          number of entries which will be added
+   */
+  public AssetManifest(File file, Format format, int size) throws MojoExecutionException {
+    File parent = file.getAbsoluteFile().getParentFile();
+    if (!parent.exists() && !parent.mkdirs()) {
+      throw new MojoExecutionException("unable to create directory: " + parent.getAbsolutePath());
+    }
+    this.file = file;
+    this.format = format;
+    tmp = new File(parent, file.getName() + ".tmp");
+    remaining = size;
+    try {
+      os = new BufferedOutputStream(Files.newOutputStream(tmp.toPath()));
+      if (format == Format.BINARY) {
+        writer = null;
+        out = new DataOutputStream(os);
+        out.write(MAGIC);
+        out.writeInt(size);
+      } else {
+        writer = new OutputStreamWriter(os, StandardCharsets.UTF_8);
+        out = null;
+        writer.write('{');
+      }
+    } catch (IOException e) {
+      throw new MojoExecutionException("unable to write manifest: " + file.getAbsolutePath(), e);
+    }
+  }
+
+  /**
+   * Writes an entry, the entries being added in the order of their path.
+   *
+   * @param path
+   *          path relative to the source directory, using / as separator
+   */
+  public void add(String path, String fingerprintedPath, String fingerprint, long size)
+      throws MojoExecutionException {
+    if (lastPath != null && lastPath.compareTo(path) >= 0) {
+      throw new IllegalArgumentException("manifest entry out of order: " + path + " after " + lastPath);
+    }
+    if (remaining-- == 0) {
+      throw new IllegalStateException("more manifest entries than expected: " + path);
+    }
+    lastPath = path;
+    try {
+      if (format == Format.BINARY) {
+        out.writeUTF(path);
+        out.writeUTF(fingerprintedPath);
+        out.writeUTF(fingerprint);
+        out.writeLong(size);
+      } else {
+        writer.write(separator);
+        writer.write("  ");
+        Utils.writeJsonString(writer, path);
+        writer.write(": {\"path\": ");
+        Utils.writeJsonString(writer, fingerprintedPath);
+        writer.write(", \"fingerprint\": ");
+        Utils.writeJsonString(writer, fingerprint);
+        writer.write(", \"size\": ");
+        writer.write(String.valueOf(size));
+        writer.write('}');
+        separator = ",\n";
+      }
+    } catch (IOException e) {
+      throw new MojoExecutionException("unable to write manifest: " + file.getAbsolutePath(), e);
+    }
+  }
+
+  /**
+   * Completes the manifest and replaces the previous one with it.
+   */
+  public void commit() throws MojoExecutionException {
+    if (remaining != 0) {
+      throw new IllegalStateException(remaining + " manifest entries missing");
+    }
+    try {
+      if (format == Format.BINARY) {
+        out.flush();
+      } else {
+        writer.write("\n}\n");
+        writer.flush();
+      }
+      os.close();
+      Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      committed = true;
+    } catch (IOException e) {
+      throw new MojoExecutionException("unable to write manifest: " + file.getAbsolutePath(), e);
+    }
+  }
+
+  /**
+   * Discards the manifest unless it has been committed.
+   */
+  @Override
+  public void close() throws IOException {
+    if (!committed) {
+      os.close();
+      Files.deleteIfExists(tmp.toPath());
+    }
+  }
+
+  /**
+   * Formats of the manifest.
+   */
+  public enum Format {
+    JSON, BINARY;
+
+    public static Format parse(String value) throws MojoExecutionException {
+      try {
+        return valueOf(value.trim().toUpperCase(Locale.ROOT));
+      } catch (IllegalArgumentException e) {
+        throw new MojoExecutionException("unknown manifest format: " + value, e);
+      }
+    }
+  }
+}
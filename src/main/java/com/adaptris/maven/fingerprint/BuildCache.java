@@ -0,0 +1,286 @@
+package com.adaptris.maven.fingerprint;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Fingerprints and processed files of the previous build, persisted between Maven runs.
+ * <p>
+ * A digest is reused as long as the size and the last modification time of the file are unchanged. A processed file
+ * doesn't need to be processed again when neither the file nor the fingerprints of the resources it references have
+ * changed and its target is still the one written by the previous build. Only the entries used during the current
+ * build are saved.
+ * </p>
+ */
+public class BuildCache {
+
+  private static final String VERSION = "2";
+  private static final String SEPARATOR = "\t";
+  private static final String HEADER = "fingerprint-cache";
+  private static final String DIGEST = "D";
+  private static final String PAGE = "P";
+
+  private final File file;
+  private final String algorithm;
+  private final String configuration;
+  private final Map<String, FileDigest> previousDigests = new ConcurrentHashMap<>();
+  private final Map<String, Page> previousPages = new ConcurrentHashMap<>();
+  private final Map<String, FileDigest> digests = new ConcurrentHashMap<>();
+  private final Map<String, Page> pages = new ConcurrentHashMap<>();
+
+  private BuildCache(File file, String algorithm, String configuration) {
+    this.file = file;
+    this.algorithm = algorithm;
+    this.configuration = configuration;
+  }
+
+  /**
+   * Loads the cache, a cache which can't be read is ignored.
+   *
+   * @param algorithm
+   *          algorithm of the digests, the digests of another algorithm are ignored
+   * @param configuration
+   *          summary of the configuration the processed files depend on, processed files are all considered as
+   *          changed when it changes
+   */
+  public static BuildCache load(File file, String algorithm, String configuration, Log log) {
+    BuildCache cache = new BuildCache(file, algorithm, configuration);
+    if (!file.isFile()) {
+      return cache;
+    }
+    try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+      String[] header = split(reader.readLine());
+      if (header.length != 4 || !HEADER.equals(header[0]) || !VERSION.equals(header[1])) {
+        log.info("ignoring cache with an unknown format: " + file.getAbsolutePath());
+        return cache;
+      }
+      if (!algorithm.equals(header[2])) {
+        log.info("ignoring cache computed with another hash algorithm: " + header[2]);
+        return cache;
+      }
+      boolean sameConfiguration = configuration.equals(header[3]);
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String[] fields = split(line);
+        if (DIGEST.equals(fields[0]) && fields.length == 5) {
+          cache.previousDigests.put(fields[1],
+              new FileDigest(Long.parseLong(fields[2]), Long.parseLong(fields[3]), fields[4]));
+        } else if (PAGE.equals(fields[0]) && sameConfiguration && fields.length >= 6 && fields.length % 2 == 0) {
+          Map<String, String> dependencies = new LinkedHashMap<>();
+          for (int i = 6; i < fields.length; i += 2) {
+            dependencies.put(fields[i], fields[i + 1]);
+          }
+          cache.previousPages.put(fields[1], new Page(new FileDigest(Long.parseLong(fields[2]),
+              Long.parseLong(fields[3]), ""), Long.parseLong(fields[4]), Long.parseLong(fields[5]), dependencies));
+        }
+      }
+    } catch (IOException | RuntimeException e) {
+      log.warn("ignoring cache which can't be read: " + file.getAbsolutePath(), e);
+      cache.previousDigests.clear();
+      cache.previousPages.clear();
+    }
+    return cache;
+  }
+
+  /**
+   * @return the digest computed by a previous build if the file is unchanged, null otherwise
+   */
+  public String getDigest(File file) throws MojoExecutionException {
+    String path = canonicalPath(file);
+    FileDigest digest = digests.get(path);
+    if (digest == null) {
+      digest = previousDigests.get(path);
+    }
+    if (digest == null || !digest.isUpToDate(file)) {
+      return null;
+    }
+    digests.putIfAbsent(path, digest);
+    return digest.digest;
+  }
+
+  public void putDigest(File file, long length, long lastModified, String digest) throws MojoExecutionException {
+    String path = canonicalPath(file);
+    if (isStorable(path)) {
+      digests.put(path, new FileDigest(length, lastModified, digest));
+    }
+  }
+
+  /**
+   * @param fingerprints
+   *          gives the current fingerprint of a dependency, an empty string if it doesn't exist
+   * @return true if the target written by the previous build for the source file is still valid
+   */
+  public boolean isUpToDate(File source, File target, FingerprintLookup fingerprints)
+      throws MojoExecutionException {
+    String path = canonicalPath(source);
+    Page page = previousPages.get(path);
+    if (page == null || !page.source.isUpToDate(source) || target.length() != page.targetLength
+        || target.lastModified() != page.targetLastModified) {
+      return false;
+    }
+    for (Entry<String, String> dependency : page.dependencies.entrySet()) {
+      if (!dependency.getValue().equals(fingerprints.getFingerprint(new File(dependency.getKey())))) {
+        return false;
+      }
+    }
+    pages.put(path, page);
+    return true;
+  }
+
+  /**
+   * @return the canonical paths of the resources referenced by the source file when the previous build processed the
+   *         same source, null otherwise
+   */
+  public Set<String> getReferences(File source) throws MojoExecutionException {
+    Page page = previousPages.get(canonicalPath(source));
+    if (page == null || !page.source.isUpToDate(source)) {
+      return null;
+    }
+    return page.dependencies.keySet();
+  }
+
+  /**
+   * Records a file which has just been processed.
+   *
+   * @param dependencies
+   *          fingerprint of every resource referenced by the source file keyed by canonical path, an empty string
+   *          for the ones which don't exist
+   */
+  public void putPage(File source, long sourceLength, long sourceLastModified, File target,
+      Map<String, String> dependencies) throws MojoExecutionException {
+    String path = canonicalPath(source);
+    if (!isStorable(path) || !dependencies.keySet().stream().allMatch(BuildCache::isStorable)) {
+      return;
+    }
+    pages.put(path, new Page(new FileDigest(sourceLength, sourceLastModified, ""), target.length(),
+        target.lastModified(), new TreeMap<>(dependencies)));
+  }
+
+  /**
+   * @return fingerprint of every existing resource referenced by the files of this build, processed or up to date,
+   *         keyed by canonical path
+   */
+  public Map<String, String> getResources() {
+    Map<String, String> resources = new TreeMap<>();
+    for (Page page : pages.values()) {
+      for (Entry<String, String> dependency : page.dependencies.entrySet()) {
+        if (!dependency.getValue().isEmpty()) {
+          resources.put(dependency.getKey(), dependency.getValue());
+        }
+      }
+    }
+    return resources;
+  }
+
+  /**
+   * Saves the entries used during this build.
+   */
+  public void save() throws MojoExecutionException {
+    File parent = file.getAbsoluteFile().getParentFile();
+    if (!parent.exists() && !parent.mkdirs()) {
+      throw new MojoExecutionException("unable to create directory: " + parent.getAbsolutePath());
+    }
+    File tmp = new File(parent, file.getName() + ".tmp");
+    try {
+      try (Writer writer = Files.newBufferedWriter(tmp.toPath(), StandardCharsets.UTF_8)) {
+        writeLine(writer, HEADER, VERSION, algorithm, configuration);
+        for (Entry<String, FileDigest> entry : new TreeMap<>(digests).entrySet()) {
+          FileDigest digest = entry.getValue();
+          writeLine(writer, DIGEST, entry.getKey(), String.valueOf(digest.length),
+              String.valueOf(digest.lastModified), digest.digest);
+        }
+        for (Entry<String, Page> entry : new TreeMap<>(pages).entrySet()) {
+          Page page = entry.getValue();
+          writer.write(PAGE + SEPARATOR + entry.getKey() + SEPARATOR + page.source.length + SEPARATOR
+              + page.source.lastModified + SEPARATOR + page.targetLength + SEPARATOR + page.targetLastModified);
+          for (Entry<String, String> dependency : page.dependencies.entrySet()) {
+            writer.write(SEPARATOR + dependency.getKey() + SEPARATOR + dependency.getValue());
+          }
+          writer.write('\n');
+        }
+      }
+      Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      throw new MojoExecutionException("unable to save cache: " + file.getAbsolutePath(), e);
+    }
+  }
+
+  private static void writeLine(Writer writer, String... fields) throws IOException {
+    writer.write(String.join(SEPARATOR, fields));
+    writer.write('\n');
+  }
+
+  private static String[] split(String line) {
+    if (line == null) {
+      return new String[0];
+    }
+    return line.split(SEPARATOR, -1);
+  }
+
+  private static boolean isStorable(String path) {
+    return path.indexOf('\t') == -1 && path.indexOf('\n') == -1 && path.indexOf('\r') == -1;
+  }
+
+  static String canonicalPath(File file) throws MojoExecutionException {
+    try {
+      return file.getCanonicalPath();
+    } catch (IOException e) {
+      throw new MojoExecutionException("unable to get canonical path for: " + file.getAbsolutePath(), e);
+    }
+  }
+
+  /**
+   * Gives the current fingerprint of a file.
+   */
+  public interface FingerprintLookup {
+
+    /**
+     * @return the fingerprint of the file, an empty string if it doesn't exist
+     */
+    String getFingerprint(File file) throws MojoExecutionException;
+  }
+
+  private static class FileDigest {
+    private final long length;
+    private final long lastModified;
+    private final String digest;
+
+    FileDigest(long length, long lastModified, String digest) {
+      this.length = length;
+      this.lastModified = lastModified;
+      this.digest = digest;
+    }
+
+    boolean isUpToDate(File file) {
+      return file.length() == length && file.lastModified() == lastModified;
+    }
+  }
+
+  private static class Page {
+    private final FileDigest source;
+    private final long targetLength;
+    private final long targetLastModified;
+    private final Map<String, String> dependencies;
+
+    Page(FileDigest source, long targetLength, long targetLastModified, Map<String, String> dependencies) {
+      this.source = source;
+      this.targetLength = targetLength;
+      this.targetLastModified = targetLastModified;
+      this.dependencies = dependencies;
+    }
+  }
+}
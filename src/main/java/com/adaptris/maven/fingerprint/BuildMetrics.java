@@ -0,0 +1,281 @@
+package com.adaptris.maven.fingerprint;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Timings and counters of an execution, recorded by all the threads at once.
+ * <p>
+ * Phase times are summed over the threads, so they can be longer than the execution. Phases overlap: the resources
+ * are mostly hashed while the links referencing them are rewritten, and the time spent in each pattern is part of the
+ * rewriting.
+ * </p>
+ */
+public class BuildMetrics {
+
+  /**
+   * Timed phases.
+   */
+  public enum Phase {
+    FIND, SCAN, MKDIRS, HASH, READ, REWRITE, WRITE, COPY, COMPRESS;
+
+    private String label() {
+      return name().toLowerCase(Locale.ROOT);
+    }
+  }
+
+  /**
+   * Counted events.
+   */
+  public enum Counter {
+    FILES_PROCESSED, FILES_UP_TO_DATE, FILES_COPIED, BYTES_READ, BYTES_WRITTEN, LINKS_REWRITTEN, LINKS_EXCLUDED,
+    LINKS_MISSING, DIGESTS_COMPUTED, DIGESTS_CACHED, DIGESTS_FROM_REACTOR, DIGESTS_SHARED, CONTENTS_SHARED;
+
+    private String label() {
+      StringBuilder label = new StringBuilder();
+      for (String word : name().toLowerCase(Locale.ROOT).split("_")) {
+        label.append(label.length() == 0 ? word : Character.toUpperCase(word.charAt(0)) + word.substring(1));
+      }
+      return label.toString();
+    }
+  }
+
+  private final long start = System.nanoTime();
+  private final int slowestCount;
+  private final boolean patternsTimed;
+  private final Map<Phase, LongAdder> phases = new EnumMap<>(Phase.class);
+  private final Map<Counter, LongAdder> counters = new EnumMap<>(Counter.class);
+  // in the order the patterns are tried
+  private final Map<String, PatternMetrics> patterns = new LinkedHashMap<>();
+  // the fastest of the slowest files first, so that it is the one removed
+  private final PriorityQueue<FileTime> slowest = new PriorityQueue<>(Comparator.comparingLong(FileTime::getNanos));
+  private long duration = -1;
+
+  /**
+   * @param slowestCount
+   *          number of slowest processed files kept
+   */
+  public BuildMetrics(int slowestCount) {
+    this(slowestCount, true);
+  }
+
+  /**
+   * @param patternsTimed
+   *          false when only the links found by the patterns are added, not the time spent trying them
+   */
+  public BuildMetrics(int slowestCount, boolean patternsTimed) {
+    this.slowestCount = slowestCount;
+    this.patternsTimed = patternsTimed;
+    for (Phase phase : Phase.values()) {
+      phases.put(phase, new LongAdder());
+    }
+    for (Counter counter : Counter.values()) {
+      counters.put(counter, new LongAdder());
+    }
+  }
+
+  /**
+   * Adds the time elapsed since start, a {@link System#nanoTime()}, to the phase.
+   */
+  public void time(Phase phase, long start) {
+    phases.get(phase).add(System.nanoTime() - start);
+  }
+
+  public void addNanos(Phase phase, long nanos) {
+    phases.get(phase).add(nanos);
+  }
+
+  public long getNanos(Phase phase) {
+    return phases.get(phase).sum();
+  }
+
+  public void increment(Counter counter) {
+    counters.get(counter).increment();
+  }
+
+  public void add(Counter counter, long value) {
+    counters.get(counter).add(value);
+  }
+
+  public long get(Counter counter) {
+    return counters.get(counter).sum();
+  }
+
+  public boolean isPatternsTimed() {
+    return patternsTimed;
+  }
+
+  /**
+   * Adds the links found by a pattern in a file and the time spent trying it.
+   */
+  public void addPattern(String pattern, long links, long nanos) {
+    PatternMetrics metrics;
+    synchronized (patterns) {
+      metrics = patterns.computeIfAbsent(pattern, p -> new PatternMetrics());
+    }
+    metrics.links.add(links);
+    metrics.nanos.add(nanos);
+  }
+
+  private List<Map.Entry<String, PatternMetrics>> getPatterns() {
+    synchronized (patterns) {
+      return new ArrayList<>(patterns.entrySet());
+    }
+  }
+
+  /**
+   * Records the time spent on a processed file, only the slowest ones are kept.
+   */
+  public void fileProcessed(String path, long nanos) {
+    synchronized (slowest) {
+      if (slowest.size() < slowestCount) {
+        slowest.add(new FileTime(path, nanos));
+      } else if (slowestCount > 0 && slowest.peek().getNanos() < nanos) {
+        slowest.poll();
+        slowest.add(new FileTime(path, nanos));
+      }
+    }
+  }
+
+  /**
+   * @return the slowest processed files, the slowest first
+   */
+  public List<FileTime> getSlowest() {
+    List<FileTime> result;
+    synchronized (slowest) {
+      result = new ArrayList<>(slowest);
+    }
+    result.sort(Comparator.comparingLong(FileTime::getNanos).reversed());
+    return result;
+  }
+
+  /**
+   * Ends the execution, its duration is the time elapsed since the metrics have been created.
+   */
+  public void stop() {
+    duration = System.nanoTime() - start;
+  }
+
+  private long getDuration() {
+    return duration == -1 ? System.nanoTime() - start : duration;
+  }
+
+  public void log(Log log) {
+    StringBuilder counts = new StringBuilder();
+    for (Counter counter : Counter.values()) {
+      counts.append(counts.length() == 0 ? "" : ", ").append(counter.label()).append('=').append(get(counter));
+    }
+    log.info("metrics: " + counts);
+    StringBuilder times = new StringBuilder();
+    for (Phase phase : Phase.values()) {
+      times.append(", ").append(phase.label()).append('=').append(millis(getNanos(phase))).append("ms");
+    }
+    log.info("time: total=" + millis(getDuration()) + "ms" + times);
+    for (Map.Entry<String, PatternMetrics> pattern : getPatterns()) {
+      log.info("pattern: " + pattern.getKey() + " links=" + pattern.getValue().links.sum()
+          + (patternsTimed ? ", time=" + millis(pattern.getValue().nanos.sum()) + "ms" : ""));
+    }
+    for (FileTime file : getSlowest()) {
+      log.info("slow file: " + file.getPath() + " " + millis(file.getNanos()) + "ms");
+    }
+  }
+
+  /**
+   * Writes the metrics as json, to a temporary file first so that a reader never sees a partial file.
+   */
+  public void write(File file) throws MojoExecutionException {
+    File parent = file.getAbsoluteFile().getParentFile();
+    if (!parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory()) {
+      throw new MojoExecutionException("unable to create directory: " + parent.getAbsolutePath());
+    }
+    File tmp = new File(parent, file.getName() + ".tmp");
+    try {
+      try (Writer writer = Files.newBufferedWriter(tmp.toPath(), StandardCharsets.UTF_8)) {
+        writeJson(writer);
+      }
+      Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      throw new MojoExecutionException("unable to write metrics: " + file.getAbsolutePath(), e);
+    }
+  }
+
+  private void writeJson(Writer writer) throws IOException {
+    writer.write("{\n  \"totalMillis\": " + millis(getDuration()) + ",\n  \"phaseMillis\": {");
+    String separator = "\n";
+    for (Phase phase : Phase.values()) {
+      writer.write(separator + "    \"" + phase.label() + "\": " + millis(getNanos(phase)));
+      separator = ",\n";
+    }
+    writer.write("\n  },\n  \"counters\": {");
+    separator = "\n";
+    for (Counter counter : Counter.values()) {
+      writer.write(separator + "    \"" + counter.label() + "\": " + get(counter));
+      separator = ",\n";
+    }
+    writer.write("\n  },\n  \"patterns\": [");
+    separator = "\n";
+    for (Map.Entry<String, PatternMetrics> pattern : getPatterns()) {
+      writer.write(separator + "    {\"pattern\": ");
+      Utils.writeJsonString(writer, pattern.getKey());
+      writer.write(", \"links\": " + pattern.getValue().links.sum()
+          + (patternsTimed ? ", \"millis\": " + millis(pattern.getValue().nanos.sum()) : "") + "}");
+      separator = ",\n";
+    }
+    writer.write("\n  ],\n  \"slowestFiles\": [");
+    separator = "\n";
+    for (FileTime file : getSlowest()) {
+      writer.write(separator + "    {\"path\": ");
+      Utils.writeJsonString(writer, file.getPath());
+      writer.write(", \"millis\": " + millis(file.getNanos()) + "}");
+      separator = ",\n";
+    }
+    writer.write("\n  ]\n}\n");
+  }
+
+  private static String millis(long nanos) {
+    return String.format(Locale.ROOT, "%.3f", nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+  }
+
+  private static class PatternMetrics {
+    private final LongAdder links = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+  }
+
+  /**
+   * Time spent on a processed file.
+   */
+  public static class FileTime {
+    private final String path;
+    private final long nanos;
+
+    FileTime(String path, long nanos) {
+      this.path = path;
+      this.nanos = nanos;
+    }
+
+    public String getPath() {
+      return path;
+    }
+
+    public long getNanos() {
+      return nanos;
+    }
+  }
+}
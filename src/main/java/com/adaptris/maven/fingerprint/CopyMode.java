@@ -0,0 +1,31 @@
+package com.adaptris.maven.fingerprint;
+
+import java.util.Locale;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * How files which are not processed end up in the target directory.
+ */
+public enum CopyMode {
+  /**
+   * Copied, keeping the last modified time of the source.
+   */
+  COPY,
+  /**
+   * Hard linked to the source, copied when the file system doesn't allow it.
+   */
+  HARDLINK,
+  /**
+   * Symbolic link to the source.
+   */
+  SYMLINK;
+
+  public static CopyMode parse(String value) throws MojoExecutionException {
+    try {
+      return valueOf(value.trim().toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      throw new MojoExecutionException("unknown copy mode: " + value, e);
+    }
+  }
+}
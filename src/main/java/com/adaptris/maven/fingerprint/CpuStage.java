@@ -0,0 +1,185 @@
+package com.adaptris.maven.fingerprint;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.concurrent.Semaphore;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * The threads allowed to use the cpu at a time, so that the files read and written by many virtual threads are
+ * rewritten, minified or compressed at most a thread per core.
+ * <p>
+ * A thread enters the stage for work which only uses the cpu and leaves it for the reads, writes and hashing that
+ * work needs as it goes: the next window of a file rewritten as it is read, the rewritten content written to the
+ * target, the fingerprint of a link. Waiting for a read doesn't keep a thread ready to rewrite from using the cpu.
+ * </p>
+ */
+class CpuStage {
+
+  /**
+   * A stage any number of threads can enter.
+   */
+  static final CpuStage UNBOUNDED = new CpuStage(0);
+
+  // chars kept by an output before they are written
+  private static final int OUTPUT_CHUNK = 64 * 1024;
+
+  // null when unbounded
+  private final Semaphore permits;
+
+  /**
+   * @param threads
+   *          0 for no limit
+   */
+  CpuStage(int threads) {
+    permits = threads > 0 ? new Semaphore(threads) : null;
+  }
+
+  /**
+   * Waits for the stage to allow one more thread. To be followed by {@link #exit()}, without entering again before.
+   */
+  void enter() throws MojoExecutionException {
+    if (permits != null) {
+      try {
+        permits.acquire();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new MojoExecutionException("interrupted while waiting for a thread", e);
+      }
+    }
+  }
+
+  void exit() {
+    if (permits != null) {
+      permits.release();
+    }
+  }
+
+  /**
+   * Runs work within the stage.
+   */
+  <T, E extends Exception> T inside(Work<T, E> work) throws E, MojoExecutionException {
+    enter();
+    try {
+      return work.run();
+    } finally {
+      exit();
+    }
+  }
+
+  /**
+   * Runs work out of the stage the current thread has entered, entering it again afterwards whether the work has
+   * completed or failed. Entering again ignores interruptions, so that the thread always leaves the stage once.
+   */
+  <T, E extends Exception> T outside(Work<T, E> work) throws E {
+    if (permits == null) {
+      return work.run();
+    }
+    permits.release();
+    try {
+      return work.run();
+    } finally {
+      permits.acquireUninterruptibly();
+    }
+  }
+
+  /**
+   * @return a reader reading out of the stage the current thread has entered
+   */
+  Reader reader(Reader reader) {
+    if (permits == null) {
+      return reader;
+    }
+    return new FilterReader(reader) {
+      @Override
+      public int read(char[] cbuf, int off, int len) throws IOException {
+        return outside(() -> in.read(cbuf, off, len));
+      }
+
+      @Override
+      public int read() throws IOException {
+        return outside(() -> in.read());
+      }
+    };
+  }
+
+  /**
+   * @return an output keeping the chars appended within the stage, then writing them to the target out of it by
+   *         chunks; {@link Output#flush()} writes the last ones
+   */
+  Output output(Appendable target) {
+    return new Output(target);
+  }
+
+  /**
+   * Work which may throw a checked exception.
+   */
+  interface Work<T, E extends Exception> {
+    T run() throws E;
+  }
+
+  /**
+   * Chars appended within the stage, written to a target out of it. Written straight to the target when the stage is
+   * unbounded.
+   */
+  class Output implements Appendable {
+    private final Appendable target;
+    private final StringBuilder pending = new StringBuilder();
+
+    Output(Appendable target) {
+      this.target = target;
+    }
+
+    @Override
+    public Output append(CharSequence csq) throws IOException {
+      if (permits == null) {
+        target.append(csq);
+      } else {
+        pending.append(csq);
+        written();
+      }
+      return this;
+    }
+
+    @Override
+    public Output append(CharSequence csq, int start, int end) throws IOException {
+      if (permits == null) {
+        target.append(csq, start, end);
+      } else {
+        pending.append(csq, start, end);
+        written();
+      }
+      return this;
+    }
+
+    @Override
+    public Output append(char c) throws IOException {
+      if (permits == null) {
+        target.append(c);
+      } else {
+        pending.append(c);
+        written();
+      }
+      return this;
+    }
+
+    private void written() throws IOException {
+      if (pending.length() >= OUTPUT_CHUNK) {
+        outside(() -> {
+          flush();
+          return null;
+        });
+      }
+    }
+
+    /**
+     * Writes the pending chars to the target, to be called out of the stage.
+     */
+    void flush() throws IOException {
+      target.append(pending);
+      pending.setLength(0);
+    }
+  }
+}
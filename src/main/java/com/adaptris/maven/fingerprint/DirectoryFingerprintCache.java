@@ -0,0 +1,110 @@
+package com.adaptris.maven.fingerprint;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Fingerprint cache in a directory, e.g. on a file system shared by the agents of a CI farm.
+ * <p>
+ * Digests are stored under <code>digests/</code> and contents under <code>contents/</code>, each entry in a
+ * subdirectory named after the first two characters of its name so that no directory grows too large. An entry is
+ * written to a temporary file of its directory first, then atomically renamed, so that concurrent builds never read
+ * it partially written; an entry already present is left as it is since it has the same value.
+ * </p>
+ */
+public class DirectoryFingerprintCache implements FingerprintCache {
+
+  private final File directory;
+
+  public DirectoryFingerprintCache(File directory) {
+    this.directory = directory;
+  }
+
+  public File getDirectory() {
+    return directory;
+  }
+
+  @Override
+  public String getDigest(String key) throws IOException {
+    try {
+      return new String(Files.readAllBytes(entry("digests", key)), StandardCharsets.UTF_8).trim();
+    } catch (NoSuchFileException e) {
+      return null;
+    }
+  }
+
+  @Override
+  public void putDigest(String key, String digest) throws IOException {
+    Path entry = entry("digests", key);
+    if (!Files.exists(entry)) {
+      Path tmp = createTemp(entry);
+      try {
+        Files.write(tmp, digest.getBytes(StandardCharsets.UTF_8));
+        move(tmp, entry);
+      } finally {
+        Files.deleteIfExists(tmp);
+      }
+    }
+  }
+
+  @Override
+  public boolean getContent(String key, File target) throws IOException {
+    Path entry = entry("contents", key);
+    if (!Files.isRegularFile(entry)) {
+      return false;
+    }
+    Path tmp = createTemp(target.toPath());
+    try {
+      Files.copy(entry, tmp, StandardCopyOption.REPLACE_EXISTING);
+      move(tmp, target.toPath());
+      return true;
+    } catch (NoSuchFileException e) {
+      // removed since, e.g. by a clean up of the directory
+      return false;
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  @Override
+  public void putContent(String key, File source) throws IOException {
+    Path entry = entry("contents", key);
+    if (!Files.exists(entry)) {
+      Path tmp = createTemp(entry);
+      try {
+        Files.copy(source.toPath(), tmp, StandardCopyOption.REPLACE_EXISTING);
+        move(tmp, entry);
+      } finally {
+        Files.deleteIfExists(tmp);
+      }
+    }
+  }
+
+  private Path entry(String kind, String key) throws IOException {
+    FingerprintCache.checkKey(key);
+    String name = key.substring(key.lastIndexOf('/') + 1);
+    String parent = key.substring(0, key.length() - name.length());
+    return directory.toPath().resolve(kind).resolve(parent).resolve(name.substring(0, Math.min(2, name.length())))
+        .resolve(name);
+  }
+
+  private static Path createTemp(Path file) throws IOException {
+    Path parent = file.toAbsolutePath().getParent();
+    Files.createDirectories(parent);
+    return Files.createTempFile(parent, "." + file.getFileName(), ".tmp");
+  }
+
+  private static void move(Path source, Path target) throws IOException {
+    try {
+      Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+}
@@ -0,0 +1,127 @@
+package com.adaptris.maven.fingerprint;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Tells whether a link contains one of the excluded resources, in a single pass over the link whatever the number of
+ * excluded resources.
+ * <p>
+ * The excluded resources are compiled into an Aho-Corasick automaton whose failure links are resolved up front, so
+ * that each character of the link is one table lookup. Only the characters found in the excluded resources have a
+ * column in the table, any other character goes back to the initial state.
+ * </p>
+ */
+public class ExclusionMatcher {
+
+  private static final int ROOT = 0;
+
+  // the distinct characters of the excluded resources, sorted
+  private final char[] alphabet;
+  // transitions[state][index of the character in the alphabet]
+  private final int[][] transitions;
+  private final boolean[] accepting;
+  private final boolean matchesAll;
+
+  public ExclusionMatcher(Collection<String> excludeResources) {
+    TreeSet<Character> characters = new TreeSet<>();
+    boolean empty = false;
+    for (String excluded : excludeResources) {
+      empty |= excluded.isEmpty();
+      for (int i = 0; i < excluded.length(); i++) {
+        characters.add(excluded.charAt(i));
+      }
+    }
+    // every link contains the empty string
+    matchesAll = empty;
+    alphabet = new char[characters.size()];
+    int index = 0;
+    for (Character c : characters) {
+      alphabet[index++] = c.charValue();
+    }
+
+    // trie of the excluded resources
+    List<int[]> trie = new ArrayList<>();
+    List<Boolean> ends = new ArrayList<>();
+    trie.add(newState());
+    ends.add(Boolean.FALSE);
+    for (String excluded : excludeResources) {
+      int state = ROOT;
+      for (int i = 0; i < excluded.length(); i++) {
+        int column = column(excluded.charAt(i));
+        if (trie.get(state)[column] == -1) {
+          trie.get(state)[column] = trie.size();
+          trie.add(newState());
+          ends.add(Boolean.FALSE);
+        }
+        state = trie.get(state)[column];
+      }
+      ends.set(state, Boolean.TRUE);
+    }
+
+    // breadth first so that the failure state of a state is complete before it is used
+    transitions = trie.toArray(new int[trie.size()][]);
+    accepting = new boolean[transitions.length];
+    int[] failure = new int[transitions.length];
+    Deque<Integer> pending = new ArrayDeque<>();
+    for (int column = 0; column < alphabet.length; column++) {
+      int next = transitions[ROOT][column];
+      if (next == -1) {
+        transitions[ROOT][column] = ROOT;
+      } else {
+        failure[next] = ROOT;
+        pending.add(next);
+      }
+    }
+    for (int state = 0; state < transitions.length; state++) {
+      accepting[state] = ends.get(state).booleanValue();
+    }
+    while (!pending.isEmpty()) {
+      int state = pending.poll();
+      // a state ending with an excluded resource is accepting
+      accepting[state] |= accepting[failure[state]];
+      for (int column = 0; column < alphabet.length; column++) {
+        int next = transitions[state][column];
+        if (next == -1) {
+          transitions[state][column] = transitions[failure[state]][column];
+        } else {
+          failure[next] = transitions[failure[state]][column];
+          pending.add(next);
+        }
+      }
+    }
+  }
+
+  private int[] newState() {
+    int[] state = new int[alphabet.length];
+    Arrays.fill(state, -1);
+    return state;
+  }
+
+  private int column(char c) {
+    return Arrays.binarySearch(alphabet, c);
+  }
+
+  /**
+   * @return true if the link contains one of the excluded resources
+   */
+  public boolean matches(CharSequence link) {
+    if (matchesAll) {
+      return true;
+    }
+    int state = ROOT;
+    for (int i = 0; i < link.length(); i++) {
+      int column = column(link.charAt(i));
+      state = column < 0 ? ROOT : transitions[state][column];
+      if (accepting[state]) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,73 @@
+package com.adaptris.maven.fingerprint;
+
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Threads the files are scanned, processed and copied with.
+ */
+public enum ExecutionMode {
+  /**
+   * A platform thread per core, or per configured thread.
+   */
+  PLATFORM,
+  /**
+   * Virtual threads, as many as the files read or written at a time, so that the reads and writes overlap whatever
+   * the number of cores, e.g. on a network file system. Platform threads on java versions without virtual threads.
+   */
+  VIRTUAL;
+
+  public static ExecutionMode parse(String value) throws MojoExecutionException {
+    try {
+      return valueOf(value.trim().toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      throw new MojoExecutionException("unknown execution mode: " + value, e);
+    }
+  }
+
+  /**
+   * @param threads
+   *          number of platform threads
+   * @param ioConcurrency
+   *          number of virtual threads
+   */
+  public ExecutorService newExecutor(int threads, int ioConcurrency, Log log) {
+    if (this == VIRTUAL) {
+      ThreadFactory factory = virtualThreadFactory();
+      if (factory != null) {
+        return Executors.newFixedThreadPool(ioConcurrency, factory);
+      }
+      log.warn("virtual threads require java 21 or later, using " + threads + " platform threads");
+    }
+    return Executors.newFixedThreadPool(threads);
+  }
+
+  /**
+   * @return true if the files are processed by virtual threads
+   */
+  public boolean isVirtual() {
+    return this == VIRTUAL && virtualThreadFactory() != null;
+  }
+
+  /**
+   * Looked up by reflection as the plugin is built for java 8.
+   *
+   * @return the factory of the virtual threads, null if the java version doesn't have them
+   */
+  static ThreadFactory virtualThreadFactory() {
+    try {
+      Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "fingerprint-", 0L);
+      return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      // before java 21, or a preview feature which isn't enabled
+      return null;
+    }
+  }
+}
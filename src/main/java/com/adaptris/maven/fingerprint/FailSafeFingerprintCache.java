@@ -0,0 +1,82 @@
+package com.adaptris.maven.fingerprint;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Never fails a build on an error of the fingerprint cache it wraps: the first error is logged and the cache isn't
+ * used for the rest of the build, the entries being computed as if there was none.
+ */
+class FailSafeFingerprintCache implements FingerprintCache {
+
+  private final FingerprintCache cache;
+  private final Log log;
+  private volatile boolean disabled;
+
+  FailSafeFingerprintCache(FingerprintCache cache, Log log) {
+    this.cache = cache;
+    this.log = log;
+  }
+
+  boolean isDisabled() {
+    return disabled;
+  }
+
+  @Override
+  public String getDigest(String key) {
+    if (!disabled) {
+      try {
+        return cache.getDigest(key);
+      } catch (IOException | RuntimeException e) {
+        disable(e);
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public void putDigest(String key, String digest) {
+    if (!disabled) {
+      try {
+        cache.putDigest(key, digest);
+      } catch (IOException | RuntimeException e) {
+        disable(e);
+      }
+    }
+  }
+
+  @Override
+  public boolean getContent(String key, File target) {
+    if (!disabled) {
+      try {
+        return cache.getContent(key, target);
+      } catch (IOException | RuntimeException e) {
+        disable(e);
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public void putContent(String key, File source) {
+    if (!disabled) {
+      try {
+        cache.putContent(key, source);
+      } catch (IOException | RuntimeException e) {
+        disable(e);
+      }
+    }
+  }
+
+  private synchronized void disable(Exception e) {
+    if (!disabled) {
+      disabled = true;
+      log.warn("fingerprint cache disabled for this build: " + e.getMessage());
+      if (log.isDebugEnabled()) {
+        log.debug(e);
+      }
+    }
+  }
+}
@@ -0,0 +1,120 @@
+package com.adaptris.maven.fingerprint;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * Digests and build outputs shared between builds, typically by the agents of a CI farm, so that a resource hashed,
+ * minified or compressed by one agent isn't by the others.
+ * <p>
+ * Entries are addressed by keys identifying the content they were computed from, so they never have to be
+ * invalidated and an entry written twice by concurrent builds has the same value. A key is made of segments of
+ * letters, digits, dots, dashes and underscores separated by slashes. Implementations must write an entry so that it
+ * is never read partially written. An entry which can't be read or written only makes the build compute it again,
+ * see {@link FailSafeFingerprintCache}.
+ * </p>
+ */
+public interface FingerprintCache {
+
+  Pattern KEY = Pattern.compile("[A-Za-z0-9_-][A-Za-z0-9._-]*(/[A-Za-z0-9_-][A-Za-z0-9._-]*)*");
+
+  /**
+   * @return the digest stored under the key, null if there is none
+   */
+  String getDigest(String key) throws IOException;
+
+  void putDigest(String key, String digest) throws IOException;
+
+  /**
+   * Copies the content stored under the key to the target, the target being left unchanged if there is none.
+   *
+   * @return true if the target has been written
+   */
+  boolean getContent(String key, File target) throws IOException;
+
+  void putContent(String key, File source) throws IOException;
+
+  /**
+   * @param location
+   *          an http or https url, or a directory
+   */
+  static FingerprintCache create(String location) throws MojoExecutionException {
+    String lowerCase = location.trim().toLowerCase(Locale.ROOT);
+    if (lowerCase.startsWith("http://") || lowerCase.startsWith("https://")) {
+      return new HttpFingerprintCache(location.trim());
+    }
+    return new DirectoryFingerprintCache(new File(location.trim()));
+  }
+
+  static void checkKey(String key) throws IOException {
+    if (!KEY.matcher(key).matches()) {
+      throw new IOException("invalid fingerprint cache key: " + key);
+    }
+  }
+
+  /**
+   * How a file is identified in the cache.
+   */
+  enum KeyMode {
+    /**
+     * Sha-256 digest of the content, so that the same file is found whatever its path and two contents never share
+     * an entry. Reading the file costs about as much as fingerprinting it, so only the minified and compressed
+     * contents are looked up.
+     */
+    CONTENT {
+      @Override
+      String key(File file) throws IOException {
+        try (InputStream is = Files.newInputStream(file.toPath())) {
+          return DigestUtils.sha256Hex(is);
+        }
+      }
+
+      @Override
+      boolean isCheaperThanDigest() {
+        return false;
+      }
+    },
+    /**
+     * Path, size, last modified time and inode of the file, without reading it, for builds sharing a workspace.
+     */
+    FILE {
+      @Override
+      String key(File file) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        return DigestUtils.md5Hex(file.getCanonicalPath() + "\n" + attributes.size() + "\n"
+            + attributes.lastModifiedTime().toMillis() + "\n" + attributes.fileKey());
+      }
+
+      @Override
+      boolean isCheaperThanDigest() {
+        return true;
+      }
+    };
+
+    /**
+     * @return the part of the key identifying the file
+     */
+    abstract String key(File file) throws IOException;
+
+    /**
+     * @return true if the key costs less than fingerprinting the file, so that digests are worth looking up
+     */
+    abstract boolean isCheaperThanDigest();
+
+    public static KeyMode parse(String value) throws MojoExecutionException {
+      try {
+        return valueOf(value.trim().toUpperCase(Locale.ROOT));
+      } catch (IllegalArgumentException e) {
+        throw new MojoExecutionException("unknown fingerprint cache key: " + value, e);
+      }
+    }
+  }
+}
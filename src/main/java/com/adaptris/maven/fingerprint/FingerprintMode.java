@@ -0,0 +1,32 @@
+package com.adaptris.maven.fingerprint;
+
+import java.util.Locale;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * Where the fingerprint is put in the links.
+ */
+public enum FingerprintMode {
+  /**
+   * Appended as a query string: <code>js/app.js?hash</code>.
+   */
+  QUERY,
+  /**
+   * Inserted before the extension of the file name: <code>js/app.hash.js</code>.
+   */
+  FILENAME,
+  /**
+   * Added as a parent directory: <code>js/hash/app.js</code>. The relative links of the processed resources are
+   * rebased in their copy, the other resources are copied as they are.
+   */
+  DIRECTORY;
+
+  public static FingerprintMode parse(String value) throws MojoExecutionException {
+    try {
+      return valueOf(value.trim().toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      throw new MojoExecutionException("unknown fingerprint mode: " + value, e);
+    }
+  }
+}
@@ -1,31 +1,58 @@
 package com.adaptris.maven.fingerprint;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
-import java.util.regex.Matcher;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
-import org.apache.commons.io.IOUtils;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 
-@Mojo(name = "generate", defaultPhase = LifecyclePhase.PACKAGE)
+@Mojo(name = "generate", defaultPhase = LifecyclePhase.PACKAGE, threadSafe = true)
 public class FingerprintMojo extends AbstractMojo {
 
   private static final String AMPERSAND = "&";
   private static final String QUESTION_MARK = "?";
+  private static final String CACHE_FILE = "cache.txt";
+  private static final String GZIP_EXTENSION = ".gz";
+  private static final String MINIFIED_DIRECTORY = "minified";
+  private static final List<String> DEFAULT_COMPRESS_EXTENSIONS = Arrays.asList("html", "htm", "css", "js", "mjs",
+      "json", "map", "svg", "xml", "txt", "ico");
   /*
    * Default patterns, more can be added using the patterns property
    */
@@ -34,12 +61,16 @@ public class FingerprintMojo extends AbstractMojo {
   public static final Pattern IMG_PATTERN = Pattern.compile("(<img.*?src=\")([^\\}\\{]*?)(\".*?>)");
   public static final Pattern CSS_IMG_PATTERN = Pattern.compile("(url\\([\",'])(.*?)([\",']\\))");
   // public static final Pattern JSTL_URL_PATTERN = Pattern.compile("(<c:url.*?value=\")(/{1}.*?)(\".*?>)");
-  public static final Pattern JSTL_URL_PATTERN = Pattern.compile("(<c:url.*?value=\")([/{1}|\\.{1,2}].*?)(\".*?>)");
+  // urls starting with / or a dot, [/{1}|\.{1,2}] was a character class matching {, |, 1... as well
+  public static final Pattern JSTL_URL_PATTERN = Pattern.compile("(<c:url.*?value=\")([/.].*?)(\".*?>)");
   public static final Pattern FROM_URL_PATTERN = Pattern.compile("(fromUrl:\\s*[\",'])(.*?)([\",'])");
 
   public static final Pattern DOLLAR_SIGN = Pattern.compile("\\$");
+  // absolute, root relative, query, fragment or expression links, which don't depend on the directory of the file
+  private static final Pattern NOT_RELATIVE = Pattern.compile("^(?:[a-zA-Z][a-zA-Z0-9+.-]*:|[/?#$%{]|$)");
 
-  public Set<Pattern> allPatterns = new HashSet<>();
+  // patterns are tried in insertion order when they match at the same position
+  public Set<Pattern> allPatterns = new LinkedHashSet<>();
 
   /**
    * target directory
@@ -74,8 +105,199 @@ public class FingerprintMojo extends AbstractMojo {
   @Parameter
   private String cdn;
 
-  private final Set<String> processedFiles = new HashSet<>();
-  private final Map<String, FilePathAndNewName> sourceToFingerprintedTarget = new HashMap<>();
+  /**
+   * Number of threads used to process files, defaults to the number of available processors
+   */
+  @Parameter
+  private Integer threads;
+
+  /**
+   * Directory where the state of the previous build is kept
+   */
+  @Parameter(defaultValue = "${project.build.directory}/fingerprint")
+  private File workDirectory;
+
+  /**
+   * Reuse the fingerprints of unchanged resources and skip unchanged files computed by the previous build
+   */
+  @Parameter(defaultValue = "true")
+  private boolean incremental = true;
+
+  /**
+   * How the files which are not processed are copied to the target directory: copy, hardlink or symlink
+   */
+  @Parameter(defaultValue = "copy")
+  private String copyMode = "copy";
+
+  /**
+   * Leave the processed files whose content is unchanged untouched in the target directory
+   */
+  @Parameter(defaultValue = "true")
+  private boolean skipUnchangedWrites = true;
+
+  /**
+   * Algorithm used to fingerprint resources: md5 (default), sha-1, sha-256, sha-512, crc32, crc32c or xxhash32
+   */
+  @Parameter(defaultValue = "md5")
+  private String hashAlgorithm = "md5";
+
+  /**
+   * Number of characters of the fingerprint kept in the links, the whole fingerprint by default
+   */
+  @Parameter
+  private Integer fingerprintLength;
+
+  /**
+   * Report the resources which are byte identical, so that duplicated copies can be removed from the webapp
+   */
+  @Parameter(defaultValue = "false")
+  private boolean reportDuplicates;
+
+  /**
+   * Where the fingerprint goes: query (default) appends it as a query string, filename inserts it before the
+   * extension and directory adds it as a parent directory. With filename and directory, a copy of each referenced
+   * resource is written under its fingerprinted name in the target directory.
+   */
+  @Parameter(defaultValue = "query")
+  private String fingerprintMode = "query";
+
+  /**
+   * File where the fingerprinted path, fingerprint and size of each referenced resource are written, no manifest by
+   * default
+   */
+  @Parameter
+  private File manifest;
+
+  /**
+   * Format of the manifest: json (default) or binary
+   */
+  @Parameter(defaultValue = "json")
+  private String manifestFormat = "json";
+
+  /**
+   * Write a gzip compressed copy, with the .gz extension, next to the files of the target directory
+   */
+  @Parameter(defaultValue = "false")
+  private boolean gzip;
+
+  /**
+   * Extensions of the files which are compressed, the usual text formats by default
+   */
+  @Parameter
+  private List<String> compressExtensions;
+
+  /**
+   * Files smaller than this number of bytes are not compressed
+   */
+  @Parameter(defaultValue = "1024")
+  private long compressMinSize = 1024;
+
+  /**
+   * Extensions of the files minified: js and css files are minified with the YUI compressor before being
+   * fingerprinted, html, htm, xhtml, jsp, jspf and tag files while their links are rewritten. None by default
+   */
+  @Parameter
+  private List<String> minifyExtensions;
+
+  /**
+   * File where the timings and counters of the build are written as json, e.g.
+   * ${project.build.directory}/fingerprint-metrics.json, none if not set. The time spent trying each pattern is only
+   * measured when it is set
+   */
+  @Parameter
+  private File metricsFile;
+
+  /**
+   * Number of slowest processed files reported in the metrics
+   */
+  @Parameter(defaultValue = "10")
+  private int metricsSlowestFiles = 10;
+
+  /**
+   * Directory or http url of a cache of digests, minified and compressed files shared between builds, e.g. by the
+   * agents of a CI farm. None by default
+   */
+  @Parameter(property = "fingerprint.cache")
+  private String fingerprintCache;
+
+  /**
+   * How files are identified in the shared cache: content computes the sha-256 digest of their content, so only
+   * minified and compressed files are shared, file uses their path, size, last modified time and inode without
+   * reading them for builds sharing a workspace, digests being shared too
+   */
+  @Parameter(defaultValue = "content")
+  private String fingerprintCacheKey = "content";
+
+  /**
+   * Shares the digests of the resources which aren't processed, e.g. the static assets of an overlay, between the
+   * modules of a reactor, so that they are hashed once per build rather than once per module
+   */
+  @Parameter(defaultValue = "true")
+  private boolean shareReactorDigests = true;
+
+  /**
+   * Threads the files are processed with: platform, a thread per core or per configured thread, or virtual, on java
+   * 21 and later, ioConcurrency virtual threads of which at most threads rewrite, minify or compress a file at a time,
+   * their reads, writes and the hashing of the resources they link to being left out of this limit, so that the reads
+   * and writes of slow file systems overlap. Platform threads are used on older java versions
+   */
+  @Parameter(defaultValue = "platform")
+  private String executionMode = "platform";
+
+  /**
+   * Number of files read, written or copied at a time by virtual threads
+   */
+  @Parameter(defaultValue = "64")
+  private int ioConcurrency = 64;
+
+  /**
+   * Processed files larger than this number of bytes are rewritten as they are read instead of being read whole in
+   * memory, except the ones minified by the YUI compressor. 0 to read every file whole
+   */
+  @Parameter(defaultValue = "16777216")
+  private long streamingThreshold = 16 * 1024 * 1024;
+
+  /**
+   * Longest match of a pattern, in chars, found in a file rewritten as it is read. The memory used to rewrite such a
+   * file is twice this number of chars whatever its size
+   */
+  @Parameter(defaultValue = "65536")
+  private int streamingWindow = 65536;
+
+  @Parameter(defaultValue = "${session}", readonly = true)
+  private MavenSession session;
+
+  private Minifier minifier;
+  private FingerprintMode linkMode = FingerprintMode.QUERY;
+  private HashAlgorithm fingerprintAlgorithm = HashAlgorithm.MD5;
+  private CopyMode fileCopyMode = CopyMode.COPY;
+  private LinkRewriter linkRewriter;
+  private BuildCache buildCache;
+  private ReferenceGraph referenceGraph;
+  private ExclusionMatcher exclusionMatcher;
+  private BuildMetrics metrics = new BuildMetrics(0);
+  private FailSafeFingerprintCache sharedCache;
+  private ReactorIndex reactorIndex;
+  private ExecutionMode threadMode = ExecutionMode.PLATFORM;
+  // bounded when the virtual threads outnumber the threads allowed to use the cpu
+  private CpuStage cpuStage = CpuStage.UNBOUNDED;
+  private FingerprintCache.KeyMode sharedCacheKeyMode = FingerprintCache.KeyMode.CONTENT;
+
+  private final AtomicInteger upToDateFiles = new AtomicInteger();
+  private final Set<String> processedFiles = ConcurrentHashMap.newKeySet();
+  // keyed on the normalized absolute path of the resource so that the result doesn't depend on the processing order
+  private final Map<String, FilePathAndNewName> sourceToFingerprintedTarget = new ConcurrentHashMap<>();
+  // fingerprint of the resources referenced by the processed files keyed by canonical path, up to date or not
+  private final Map<String, String> referencedResources = new ConcurrentHashMap<>();
+  // whole digest keyed on canonical path, so that each physical file is hashed once
+  private final Map<String, FutureTask<String>> digests = new ConcurrentHashMap<>();
+  // the same links are found over and over, each one is matched against the excluded resources once
+  private final Map<String, Boolean> exclusions = new ConcurrentHashMap<>();
+  // canonical path of the missing resources keyed like sourceToFingerprintedTarget, so that they are looked up once
+  private final Map<String, String> missingResources = new ConcurrentHashMap<>();
+  // reported once per link at the end of the execution
+  private final Map<String, AtomicInteger> excludedLinks = new ConcurrentHashMap<>();
+  private final Map<String, Set<String>> missingLinks = new ConcurrentHashMap<>();
 
   public FingerprintMojo() {
     allPatterns.add(LINK_PATTERN);
@@ -89,6 +311,10 @@ public class FingerprintMojo extends AbstractMojo {
   private void addPatterns() throws MojoExecutionException {
     if (patterns != null) {
       for (String pattern : patterns) {
+        // already added when executed again
+        if (allPatterns.stream().anyMatch(p -> p.pattern().equals(pattern))) {
+          continue;
+        }
         try {
           allPatterns.add(Pattern.compile(pattern));
         } catch (PatternSyntaxException pse) {
@@ -100,7 +326,33 @@ public class FingerprintMojo extends AbstractMojo {
 
   @Override
   public void execute() throws MojoExecutionException {
+    generate();
+  }
+
+  private void generate() throws MojoExecutionException {
+    metrics = new BuildMetrics(metricsSlowestFiles, metricsFile != null);
     addPatterns();
+    linkRewriter = new LinkRewriter(allPatterns);
+    for (Pattern pattern : linkRewriter.getPatterns()) {
+      // reported in the order they are tried
+      metrics.addPattern(pattern.pattern(), 0, 0);
+    }
+    exclusionMatcher = new ExclusionMatcher(excludeResources == null ? Collections.<String>emptyList()
+        : excludeResources);
+    fileCopyMode = CopyMode.parse(copyMode);
+    fingerprintAlgorithm = HashAlgorithm.parse(hashAlgorithm);
+    linkMode = FingerprintMode.parse(fingerprintMode);
+    AssetManifest.Format assetManifestFormat = AssetManifest.Format.parse(manifestFormat);
+    sharedCacheKeyMode = FingerprintCache.KeyMode.parse(fingerprintCacheKey);
+    reactorIndex = shareReactorDigests && session != null ? ReactorIndex.get(session) : null;
+    threadMode = ExecutionMode.parse(executionMode);
+    cpuStage = threadMode.isVirtual() ? new CpuStage(getThreadCount()) : CpuStage.UNBOUNDED;
+    sharedCache = fingerprintCache == null || fingerprintCache.trim().isEmpty() ? null
+        : new FailSafeFingerprintCache(FingerprintCache.create(fingerprintCache), getLog());
+    if (!isEmpty(minifyExtensions)) {
+      minifier = new Minifier(minifyExtensions, workDirectory == null ? null : new File(workDirectory,
+          MINIFIED_DIRECTORY), sharedCache, cpuStage, getLog());
+    }
 
     if (!sourceDirectory.isDirectory()) {
       throw new MojoExecutionException("source directory is not a directory: " + sourceDirectory.getAbsolutePath());
@@ -123,159 +375,1018 @@ public class FingerprintMojo extends AbstractMojo {
         excludes = Collections.emptyList();
       }
     }
+    long findStart = System.nanoTime();
     List<File> filesToOptimize = findFilesToOptimize(sourceDirectory);
+    metrics.time(BuildMetrics.Phase.FIND, findStart);
     if (isEmpty(filesToOptimize)) {
       getLog().info("no files to optimize were found");
       return;
     }
 
-    Utils.mkDirs(sourceDirectory, targetDirectory, getLog());
+    if (incremental && workDirectory != null) {
+      buildCache = BuildCache.load(new File(workDirectory, CACHE_FILE), fingerprintAlgorithm.name(),
+          cacheConfiguration(), getLog());
+    }
 
     for (File cur : filesToOptimize) {
-      try {
-        process(cur);
-        processedFiles.add(cur.getAbsolutePath());
-      } catch (Exception e) {
-        getLog().error("unable to process: " + cur.getAbsolutePath(), e);
-        throw new MojoExecutionException("unable to process: " + cur.getAbsolutePath(), e);
+      processedFiles.add(cur.getAbsolutePath());
+    }
+    ExecutorService executor = newExecutor();
+    try {
+      referenceGraph = buildReferenceGraph(filesToOptimize, executor);
+      List<List<File>> levels = referenceGraph.levels();
+      if (!referenceGraph.getUnordered().isEmpty()) {
+        getLog().warn("circular references between processed files, fingerprinted from their source: "
+            + String.join(", ", new TreeSet<>(referenceGraph.getUnordered())));
+      }
+      List<File> filesToCopy = new ArrayList<>();
+      List<Future<?>> copies = null;
+      for (List<File> level : levels) {
+        List<Future<?>> processing = processAll(level, executor);
+        if (copies == null) {
+          // the files which are not processed are copied while the first level is processed
+          copies = copyDeepFiles(sourceDirectory, targetDirectory, executor, filesToCopy);
+        }
+        waitFor(processing, level, "process");
       }
+      waitFor(copies, filesToCopy, "copy");
+      if (linkMode != FingerprintMode.QUERY) {
+        List<File> resources = new ArrayList<>();
+        waitFor(copyFingerprintedResources(executor, resources, null), resources, "copy");
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    logLinks();
+    if (reportDuplicates) {
+      logDuplicates();
+    }
+    if (manifest != null) {
+      writeManifest(assetManifestFormat);
+    }
+    if (upToDateFiles.get() > 0) {
+      getLog().info(upToDateFiles.get() + " file(s) up to date");
     }
 
-    copyDeepFiles(sourceDirectory, targetDirectory);
+    if (buildCache != null) {
+      buildCache.save();
+    }
+    // the files up to date haven't been minified, their contents are still used
+    if (minifier != null && upToDateFiles.get() == 0) {
+      minifier.pruneCache();
+    }
+    metrics.stop();
+    metrics.log(getLog());
+    if (metricsFile != null) {
+      metrics.write(metricsFile);
+    }
   }
 
-  private void process(File sourceFile) throws MojoExecutionException {
+  /**
+   * Makes the next {@link #update(Collection)} execute again from scratch, e.g. after an update which has failed.
+   */
+  void invalidate() {
+    referenceGraph = null;
+  }
+
+  /**
+   * Executes again from scratch, when what has changed since the last execution is unknown.
+   */
+  void rebuild() throws MojoExecutionException {
+    processedFiles.clear();
+    sourceToFingerprintedTarget.clear();
+    referencedResources.clear();
+    digests.clear();
+    exclusions.clear();
+    missingResources.clear();
+    upToDateFiles.set(0);
+    referenceGraph = null;
+    generate();
+  }
+
+  /**
+   * Brings the target directory up to date after some files of the source directory have changed since the last
+   * execution. The target of the deleted files is removed, with its compressed copy. The changed files which are not
+   * processed are copied again. The changed processed files, and the processed files referencing a changed file
+   * directly or through other processed files, are processed again. The whole source directory is executed again
+   * when a file to process has been created or deleted.
+   *
+   * @param changedFiles
+   *          files of the source directory which have been created, modified or deleted
+   * @return the number of files copied, deleted or processed again
+   */
+  int update(Collection<File> changedFiles) throws MojoExecutionException {
+    int deleted = 0;
+    for (File file : changedFiles) {
+      if (!file.exists()) {
+        deleteTarget(file);
+        deleted++;
+      }
+    }
+    if (referenceGraph == null || !isSameFilesToOptimize()) {
+      rebuild();
+      return processedFiles.size() + deleted;
+    }
+    metrics = new BuildMetrics(metricsSlowestFiles, metricsFile != null);
+    Set<String> changed = new HashSet<>();
+    List<File> processedChanges = new ArrayList<>();
+    List<File> filesToCopy = new ArrayList<>();
+    for (File file : changedFiles) {
+      changed.add(BuildCache.canonicalPath(file));
+      // may have been created
+      missingResources.remove(normalizedPath(file));
+      if (processedFiles.contains(file.getAbsolutePath())) {
+        processedChanges.add(file);
+      } else if (file.isFile()) {
+        filesToCopy.add(file);
+      }
+    }
+    Set<String> affected = new HashSet<>(changed);
+    affected.addAll(referenceGraph.getReferencing(changed));
+    // their fingerprint is computed again the next time they are referenced
+    digests.keySet().removeAll(affected);
+    sourceToFingerprintedTarget.values().removeIf(resource -> affected.contains(resource.getFilePath()));
+    referencedResources.keySet().removeAll(affected);
+    upToDateFiles.set(0);
+
+    int updated = filesToCopy.size() + deleted;
+    ExecutorService executor = newExecutor();
+    try {
+      List<Future<?>> scans = new ArrayList<>(processedChanges.size());
+      for (File cur : processedChanges) {
+        scans.add(executor.submit(() -> {
+          long start = System.nanoTime();
+          referenceGraph.setReferences(BuildCache.canonicalPath(cur), findReferences(cur));
+          metrics.time(BuildMetrics.Phase.SCAN, start);
+          return null;
+        }));
+      }
+      List<Future<?>> copies = new ArrayList<>(filesToCopy.size());
+      for (File cur : filesToCopy) {
+        File targetFile = getTargetFile(cur);
+        copies.add(executor.submit(() -> {
+          File parent = targetFile.getParentFile();
+          if (!parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory()) {
+            throw new MojoExecutionException("unable to create directory: " + parent.getAbsolutePath());
+          }
+          copyResource(cur, targetFile);
+          return null;
+        }));
+      }
+      waitFor(scans, processedChanges, "scan");
+      waitFor(copies, filesToCopy, "copy");
+      Set<File> affectedFiles = new HashSet<>();
+      for (String path : affected) {
+        if (referenceGraph.contains(path)) {
+          affectedFiles.add(referenceGraph.getFile(path));
+        }
+      }
+      for (List<File> level : referenceGraph.levels()) {
+        List<File> filesToProcess = new ArrayList<>(level);
+        filesToProcess.retainAll(affectedFiles);
+        waitFor(processAll(filesToProcess, executor), filesToProcess, "process");
+        updated += filesToProcess.size();
+      }
+      if (linkMode != FingerprintMode.QUERY) {
+        List<File> resources = new ArrayList<>();
+        waitFor(copyFingerprintedResources(executor, resources, affected), resources, "copy");
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    logLinks();
+    if (manifest != null) {
+      writeManifest(AssetManifest.Format.parse(manifestFormat));
+    }
+    if (buildCache != null) {
+      buildCache.save();
+    }
+    metrics.stop();
+    if (metricsFile != null) {
+      metrics.write(metricsFile);
+    }
+    return updated;
+  }
+
+  /**
+   * Removes the target of a file, or directory, deleted from the source directory.
+   */
+  private void deleteTarget(File sourceFile) throws MojoExecutionException {
+    File targetFile = getTargetFile(sourceFile);
+    try {
+      if (targetFile.isDirectory()) {
+        FileUtils.deleteDirectory(targetFile);
+      } else {
+        Files.deleteIfExists(targetFile.toPath());
+        Files.deleteIfExists(new File(targetFile.getPath() + GZIP_EXTENSION).toPath());
+      }
+    } catch (IOException e) {
+      throw new MojoExecutionException("unable to delete: " + targetFile.getAbsolutePath(), e);
+    }
     if (getLog().isDebugEnabled()) {
-      getLog().debug("processing file: " + sourceFile.getAbsolutePath());
+      getLog().debug("deleted: " + targetFile.getAbsolutePath());
+    }
+  }
+
+  private boolean isSameFilesToOptimize() {
+    Set<String> filesToOptimize = new HashSet<>();
+    for (File cur : findFilesToOptimize(sourceDirectory)) {
+      filesToOptimize.add(cur.getAbsolutePath());
+    }
+    return filesToOptimize.equals(processedFiles);
+  }
+
+  File getSourceDirectory() {
+    return sourceDirectory;
+  }
+
+  /**
+   * @return digest of the configuration which changes the content of the processed files
+   */
+  private String cacheConfiguration() {
+    StringBuilder configuration = new StringBuilder();
+    configuration.append("targetDirectory=").append(targetDirectory.getAbsolutePath());
+    configuration.append("\ncdn=").append(cdn);
+    configuration.append("\nhashAlgorithm=").append(fingerprintAlgorithm);
+    configuration.append("\nfingerprintLength=").append(fingerprintLength);
+    configuration.append("\nfingerprintMode=").append(linkMode);
+    configuration.append("\nminifyExtensions=").append(minifyExtensions);
+    if (streamingThreshold > 0) {
+      // links longer than the window aren't found in the streamed files
+      configuration.append("\nstreamingThreshold=").append(streamingThreshold);
+      configuration.append("\nstreamingWindow=").append(streamingWindow);
     }
-    String data = Utils.readFile(sourceFile);
-    StringBuffer outputFileData = new StringBuffer(data);
     for (Pattern pattern : allPatterns) {
-      outputFileData = processPattern(pattern, outputFileData.toString(), sourceFile.getAbsolutePath());
+      configuration.append("\npattern=").append(pattern.pattern());
     }
-    String processedData = outputFileData.toString();
+    if (excludeResources != null) {
+      for (String excludeResource : excludeResources) {
+        configuration.append("\nexcludeResource=").append(excludeResource);
+      }
+    }
+    return DigestUtils.md5Hex(configuration.toString());
+  }
 
-    File targetFile = new File(targetDirectory, stripSourceDirectory(sourceDirectory, sourceFile));
-    Utils.writeInFile(processedData, targetFile);
+  /**
+   * Finds, in parallel, the processed files referenced by each processed file. The references of a file unchanged
+   * since the previous build are taken from the build cache instead of scanning it again.
+   */
+  private ReferenceGraph buildReferenceGraph(List<File> filesToOptimize, ExecutorService executor)
+      throws MojoExecutionException {
+    ReferenceGraph graph = new ReferenceGraph();
+    List<String> canonicalPaths = new ArrayList<>(filesToOptimize.size());
+    for (File cur : filesToOptimize) {
+      String canonicalPath = BuildCache.canonicalPath(cur);
+      canonicalPaths.add(canonicalPath);
+      graph.add(canonicalPath, cur);
+    }
+    List<Future<?>> futures = new ArrayList<>(filesToOptimize.size());
+    for (int i = 0; i < filesToOptimize.size(); i++) {
+      File cur = filesToOptimize.get(i);
+      String canonicalPath = canonicalPaths.get(i);
+      futures.add(executor.submit(() -> {
+        long start = System.nanoTime();
+        graph.addReferences(canonicalPath, findReferences(cur));
+        metrics.time(BuildMetrics.Phase.SCAN, start);
+        return null;
+      }));
+    }
+    waitFor(futures, filesToOptimize, "scan");
+    return graph;
   }
 
-  private StringBuffer processPattern(Pattern p, String data, String sourceOfData) throws MojoExecutionException {
-    StringBuffer outputFileData = new StringBuffer();
-    Matcher m = p.matcher(data);
-    while (m.find()) {
-      String curLink = m.group(2);
-      if (getLog().isDebugEnabled()) {
-        for (int i = 0; i < m.groupCount(); ++i) {
-          getLog().debug("group " + i + ": " + m.group(i));
+  /**
+   * @return the canonical paths of the resources the file links to
+   */
+  private Collection<String> findReferences(File sourceFile) throws MojoExecutionException {
+    Set<String> references = buildCache == null ? null : buildCache.getReferences(sourceFile);
+    if (references != null) {
+      return references;
+    }
+    Set<String> links = new HashSet<>();
+    LinkRewriter.LinkHandler handler = link -> {
+      if (!isExcluded(link)) {
+        int queryIndex = queryIndex(link);
+        links.add(queryIndex == -1 ? link : link.substring(0, queryIndex));
+      }
+      return link;
+    };
+    if (isStreamed(sourceFile)) {
+      try (Reader reader = cpuStage.reader(Utils.newReader(sourceFile))) {
+        cpuStage.enter();
+        try {
+          linkRewriter.rewriteTo(reader, streamingWindow, handler, null, null);
+        } finally {
+          cpuStage.exit();
         }
+      } catch (IOException e) {
+        throw new MojoExecutionException("unable to read file: " + sourceFile.getAbsolutePath(), e);
       }
-      if (isExcluded(curLink)) {
-        getLog().info("resource excluded: " + curLink);
-        m.appendReplacement(outputFileData, "$1" + curLink + "$3");
-        continue;
+    } else {
+      CharSequence data = readSource(sourceFile);
+      cpuStage.enter();
+      try {
+        linkRewriter.rewrite(data, handler);
+      } finally {
+        cpuStage.exit();
       }
-      int queryIndex = curLink.indexOf(QUESTION_MARK);
-      String query = "";
-      if (queryIndex != -1) {
-        query = curLink.substring(queryIndex);
-        curLink = curLink.substring(0, queryIndex);
-      } else {
-        queryIndex = curLink.indexOf("#");
-        if (queryIndex != -1) {
-          query = curLink.substring(queryIndex);
-          curLink = curLink.substring(0, queryIndex);
+    }
+    String parent = sourceFile.getAbsoluteFile().getParent();
+    references = new HashSet<>();
+    for (String link : links) {
+      references.add(BuildCache.canonicalPath(new File(parent, link)));
+    }
+    return references;
+  }
+
+  private List<Future<?>> processAll(List<File> filesToOptimize, ExecutorService executor) {
+    List<Future<?>> futures = new ArrayList<>(filesToOptimize.size());
+    for (File cur : filesToOptimize) {
+      futures.add(executor.submit(() -> {
+        long start = System.nanoTime();
+        if (isUpToDate(cur)) {
+          upToDateFiles.incrementAndGet();
+          metrics.increment(BuildMetrics.Counter.FILES_UP_TO_DATE);
+        } else {
+          process(cur);
+          metrics.increment(BuildMetrics.Counter.FILES_PROCESSED);
         }
+        compress(getTargetFile(cur));
+        metrics.fileProcessed(cur.getAbsolutePath(), System.nanoTime() - start);
+        return null;
+      }));
+    }
+    return futures;
+  }
+
+  /**
+   * Waits in submission order so the first failing file is the one reported.
+   */
+  private void waitFor(List<Future<?>> futures, List<File> files, String action) throws MojoExecutionException {
+    for (int i = 0; i < futures.size(); i++) {
+      String curPath = files.get(i).getAbsolutePath();
+      try {
+        futures.get(i).get();
+      } catch (ExecutionException e) {
+        getLog().error("unable to " + action + ": " + curPath, e.getCause());
+        throw new MojoExecutionException("unable to " + action + ": " + curPath, e.getCause());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new MojoExecutionException("interrupted while waiting to " + action + ": " + curPath, e);
       }
+    }
+  }
 
-      String targetPath = null;
-      FilePathAndNewName filePathAndNewName = sourceToFingerprintedTarget.get(curLink);
-      if (filePathAndNewName == null || filePathAndNewName.getNewName() == null) {
-        // File curLinkFile = new File(sourceDirectory, curLink);
-        String parent = new File(sourceOfData).getParent();
-        File curLinkFile = new File(parent, curLink);
-        if (!curLinkFile.exists()) {
-          getLog().warn("resource file doesn't exist: " + curLink + " found in: " + sourceOfData);
-          // escape dollar sign in result output
-          curLink = DOLLAR_SIGN.matcher(curLink).replaceAll("\\\\\\$");
-          m.appendReplacement(outputFileData, "$1" + curLink + "$3");
-          continue;
+  private boolean isUpToDate(File sourceFile) throws MojoExecutionException {
+    if (buildCache == null) {
+      return false;
+    }
+    return buildCache.isUpToDate(sourceFile, getTargetFile(sourceFile), this::fingerprint);
+  }
+
+  /**
+   * @return the fingerprint of a resource referenced by a processed file, an empty string if it doesn't exist
+   */
+  private String fingerprint(File file) throws MojoExecutionException {
+    if (!file.exists()) {
+      return "";
+    }
+    String canonicalPath = BuildCache.canonicalPath(file);
+    String fingerprint = truncate(digest(canonicalPath, file));
+    referencedResources.put(canonicalPath, fingerprint);
+    return fingerprint;
+  }
+
+  private File getTargetFile(File sourceFile) {
+    return new File(targetDirectory, stripSourceDirectory(sourceDirectory, sourceFile));
+  }
+
+  private ExecutorService newExecutor() {
+    return threadMode.newExecutor(getThreadCount(), Math.max(1, ioConcurrency), getLog());
+  }
+
+  private int getThreadCount() {
+    if (threads == null || threads.intValue() < 1) {
+      return Runtime.getRuntime().availableProcessors();
+    }
+    return threads.intValue();
+  }
+
+  private void process(File sourceFile) throws MojoExecutionException {
+    if (getLog().isDebugEnabled()) {
+      getLog().debug("processing file: " + sourceFile.getAbsolutePath());
+    }
+    long length = sourceFile.length();
+    long lastModified = sourceFile.lastModified();
+    boolean streamed = isStreamed(sourceFile);
+    CharSequence data = null;
+    if (!streamed) {
+      long readStart = System.nanoTime();
+      data = readSource(sourceFile);
+      metrics.time(BuildMetrics.Phase.READ, readStart);
+    }
+    metrics.add(BuildMetrics.Counter.BYTES_READ, length);
+    String sourceOfData = sourceFile.getAbsolutePath();
+    Map<String, String> dependencies = new HashMap<>();
+    // resolving a link may hash the resource
+    LinkRewriter.LinkHandler handler = link -> cpuStage.outside(() -> rewriteLink(link, sourceOfData, dependencies));
+
+    File targetFile = getTargetFile(sourceFile);
+    // the target may have been linked to the source when it wasn't processed
+    Utils.unlink(sourceFile, targetFile);
+    LinkRewriter.Statistics statistics = new LinkRewriter.Statistics(linkRewriter, metrics.isPatternsTimed());
+    long rewriteStart = System.nanoTime();
+    // the rewritten content is encoded to the target by chunks as it is produced, read as it is rewritten for large
+    // files, both out of the cpu stage
+    try (Reader reader = streamed ? cpuStage.reader(Utils.newReader(sourceFile)) : null;
+        TargetWriter target = new TargetWriter(targetFile, skipUnchangedWrites)) {
+      CpuStage.Output chunks = cpuStage.output(target);
+      HtmlMinifier htmlMinifier = minifier != null && minifier.acceptsHtml(sourceFile) ? new HtmlMinifier(chunks)
+          : null;
+      Appendable output = htmlMinifier == null ? chunks : htmlMinifier;
+      cpuStage.enter();
+      try {
+        if (streamed) {
+          linkRewriter.rewriteTo(reader, streamingWindow, handler, output, statistics);
+        } else {
+          linkRewriter.rewriteTo(data, handler, output, statistics);
         }
-        String fingerprint = Utils.generateMd5Fingerprint(curLinkFile);
-        targetPath = generateTargetResourceFilename(curLink, fingerprint);
+        if (htmlMinifier != null) {
+          htmlMinifier.finish();
+        }
+      } finally {
+        cpuStage.exit();
+      }
+      chunks.flush();
+      target.finish();
+      metrics.addNanos(BuildMetrics.Phase.REWRITE, System.nanoTime() - rewriteStart - target.getIoNanos());
+      metrics.addNanos(BuildMetrics.Phase.WRITE, target.getIoNanos());
+      metrics.add(BuildMetrics.Counter.BYTES_WRITTEN, target.getBytesWritten());
+    } catch (IOException e) {
+      throw new MojoExecutionException("unable to write in file: " + targetFile.getAbsolutePath(), e);
+    }
+    List<Pattern> rewriterPatterns = linkRewriter.getPatterns();
+    for (int i = 0; i < rewriterPatterns.size(); i++) {
+      metrics.addPattern(rewriterPatterns.get(i).pattern(), statistics.getLinks(i), statistics.getNanos(i));
+    }
+    if (buildCache != null) {
+      buildCache.putPage(sourceFile, length, lastModified, targetFile, dependencies);
+    }
+  }
 
-        try {
-          filePathAndNewName = new FilePathAndNewName(curLinkFile.getCanonicalPath(),
-              new File(targetPath).getName(), targetPath, fingerprint);
-        } catch (IOException ioe) {
-          throw new MojoExecutionException(
-              "unable to get canonical path for: " + curLinkFile.getAbsolutePath(), ioe);
+  /**
+   * @return true if the file is rewritten as it is read
+   */
+  private boolean isStreamed(File sourceFile) {
+    return streamingThreshold > 0 && sourceFile.length() > streamingThreshold && !isMinified(sourceFile);
+  }
+
+  private CharSequence readSource(File sourceFile) throws MojoExecutionException {
+    return isMinified(sourceFile) ? minify(sourceFile) : Utils.readChars(sourceFile);
+  }
+
+  private boolean isMinified(File file) {
+    return minifier != null && minifier.accepts(file);
+  }
+
+  private String minify(File file) throws MojoExecutionException {
+    return minifier.minify(file);
+  }
+
+  /**
+   * Writes the compressed copy of a file of the target directory, the copy is only written again when the file has
+   * been.
+   */
+  private void compress(File targetFile) throws MojoExecutionException {
+    if (!gzip || targetFile.length() < compressMinSize) {
+      return;
+    }
+    String extension = Utils.getFileExtension(targetFile.getName());
+    List<String> extensions = compressExtensions == null ? DEFAULT_COMPRESS_EXTENSIONS : compressExtensions;
+    if (extension == null || !extensions.contains(extension.toLowerCase(Locale.ROOT))) {
+      return;
+    }
+    long start = System.nanoTime();
+    File compressed = new File(targetFile.getPath() + GZIP_EXTENSION);
+    long lastModified = targetFile.lastModified();
+    if (sharedCache != null && !(compressed.isFile() && compressed.lastModified() == lastModified)) {
+      String sharedKey = sharedCacheKey(targetFile, "gzip/", GZIP_EXTENSION);
+      if (sharedKey != null && sharedCache.getContent(sharedKey, compressed)) {
+        metrics.increment(BuildMetrics.Counter.CONTENTS_SHARED);
+        // as if written by Utils.gzip, so that it isn't compressed again until the file changes
+        if (!compressed.setLastModified(lastModified)) {
+          throw new MojoExecutionException("unable to set last modified time of: " + compressed.getAbsolutePath());
         }
-        sourceToFingerprintedTarget.put(curLink, filePathAndNewName);
-      } else {
-        targetPath = filePathAndNewName.getNewPath();
+      } else if (gzip(targetFile, compressed) && sharedKey != null) {
+        sharedCache.putContent(sharedKey, compressed);
       }
+    } else {
+      gzip(targetFile, compressed);
+    }
+    metrics.time(BuildMetrics.Phase.COMPRESS, start);
+  }
+
+  private boolean gzip(File source, File target) throws MojoExecutionException {
+    cpuStage.enter();
+    try {
+      return Utils.gzip(source, target);
+    } finally {
+      cpuStage.exit();
+    }
+  }
+
+  /**
+   * @return the key of the file in the shared cache, null if there is no shared cache or the file can't be read
+   */
+  private String sharedCacheKey(File file, String prefix, String suffix) {
+    if (sharedCache == null || sharedCache.isDisabled()) {
+      return null;
+    }
+    try {
+      return prefix + sharedCacheKeyMode.key(file) + suffix;
+    } catch (IOException e) {
+      getLog().warn("unable to compute the fingerprint cache key of: " + file.getAbsolutePath() + ", " + e);
+      return null;
+    }
+  }
 
-      String targetURL;
-      int queryMarkIndex = query.indexOf(QUESTION_MARK);
-      if (queryMarkIndex != -1 && targetPath.indexOf(QUESTION_MARK) != -1) {
-        query = AMPERSAND + query.substring(queryMarkIndex + 1);
+  /**
+   * @param dependencies
+   *          receives the fingerprint of the resource keyed by its canonical path
+   */
+  private String rewriteLink(String curLink, String sourceOfData, Map<String, String> dependencies)
+      throws MojoExecutionException {
+    if (getLog().isDebugEnabled()) {
+      getLog().debug("link found: " + curLink + " in: " + sourceOfData);
+    }
+    if (isExcluded(curLink)) {
+      excludedLinks.computeIfAbsent(curLink, l -> new AtomicInteger()).incrementAndGet();
+      metrics.increment(BuildMetrics.Counter.LINKS_EXCLUDED);
+      return curLink;
+    }
+    int queryIndex = queryIndex(curLink);
+    String query = "";
+    if (queryIndex != -1) {
+      query = curLink.substring(queryIndex);
+      curLink = curLink.substring(0, queryIndex);
+    }
+
+    String parent = new File(sourceOfData).getParent();
+    File curLinkFile = new File(parent, curLink);
+    FilePathAndNewName filePathAndNewName = resolve(curLinkFile, curLink);
+    if (filePathAndNewName == null) {
+      missingLinks.computeIfAbsent(curLink, l -> ConcurrentHashMap.newKeySet()).add(sourceOfData);
+      metrics.increment(BuildMetrics.Counter.LINKS_MISSING);
+      dependencies.put(missingResources.get(normalizedPath(curLinkFile)), "");
+      return curLink;
+    }
+    dependencies.put(filePathAndNewName.getFilePath(), filePathAndNewName.getFingerprint());
+    metrics.increment(BuildMetrics.Counter.LINKS_REWRITTEN);
+    // the same file may be referenced using a different link from another directory
+    String targetPath = generateTargetResourceFilename(curLink, filePathAndNewName.getFingerprint(), linkMode);
+
+    int queryMarkIndex = query.indexOf(QUESTION_MARK);
+    if (queryMarkIndex != -1 && targetPath.indexOf(QUESTION_MARK) != -1) {
+      query = AMPERSAND + query.substring(queryMarkIndex + 1);
+    }
+    if (cdn == null) {
+      return targetPath + query;
+    }
+    return cdn + targetPath + query;
+  }
+
+  /**
+   * @return the index of the query string of the link, or of its fragment when it has no query string, -1 if it has
+   *         none
+   */
+  private static int queryIndex(String link) {
+    int index = link.indexOf(QUESTION_MARK);
+    return index == -1 ? link.indexOf('#') : index;
+  }
+
+  /**
+   * @return the fingerprinted resource, null if it doesn't exist
+   */
+  private FilePathAndNewName resolve(File curLinkFile, String curLink) throws MojoExecutionException {
+    String key = normalizedPath(curLinkFile);
+    FilePathAndNewName filePathAndNewName = sourceToFingerprintedTarget.get(key);
+    if (filePathAndNewName != null && filePathAndNewName.getNewName() != null) {
+      return filePathAndNewName;
+    }
+    if (missingResources.containsKey(key)) {
+      return null;
+    }
+    if (!curLinkFile.exists()) {
+      missingResources.putIfAbsent(key, BuildCache.canonicalPath(curLinkFile));
+      return null;
+    }
+    String canonicalPath = BuildCache.canonicalPath(curLinkFile);
+    String fingerprint = truncate(digest(canonicalPath, curLinkFile));
+    String targetPath = generateTargetResourceFilename(curLink, fingerprint, linkMode);
+    filePathAndNewName = new FilePathAndNewName(canonicalPath, new File(targetPath).getName(), targetPath,
+        fingerprint);
+    referencedResources.put(canonicalPath, fingerprint);
+    FilePathAndNewName previous = sourceToFingerprintedTarget.putIfAbsent(key, filePathAndNewName);
+    return previous == null ? filePathAndNewName : previous;
+  }
+
+  private static String normalizedPath(File file) {
+    return file.toPath().toAbsolutePath().normalize().toString();
+  }
+
+  /**
+   * @return the whole digest of the file, computed once whatever the number of threads asking for it. The digest of a
+   *         processed file is the one of its rewritten content unless it is in a cycle.
+   */
+  private String digest(String canonicalPath, File file) throws MojoExecutionException {
+    FutureTask<String> task = digests.get(canonicalPath);
+    if (task == null) {
+      FutureTask<String> newTask = new FutureTask<>(() -> {
+        if (referenceGraph != null && referenceGraph.isOrdered(canonicalPath)) {
+          // processed before the files referencing it, so its target is already written
+          return generateFingerprint(getTargetFile(referenceGraph.getFile(canonicalPath)));
+        }
+        boolean minified = isMinified(file);
+        if (reactorIndex == null) {
+          return sourceDigest(file, minified);
+        }
+        // the same in every module of the reactor
+        AtomicBoolean computed = new AtomicBoolean();
+        String fingerprint = reactorIndex.digest(fingerprintAlgorithm.name() + (minified ? ":minified:" : ":")
+            + canonicalPath, file, () -> {
+              computed.set(true);
+              return sourceDigest(file, minified);
+            });
+        if (!computed.get()) {
+          metrics.increment(BuildMetrics.Counter.DIGESTS_FROM_REACTOR);
+        }
+        return fingerprint;
+      });
+      task = digests.putIfAbsent(canonicalPath, newTask);
+      if (task == null) {
+        task = newTask;
+        task.run();
+      }
+    }
+    try {
+      return task.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof MojoExecutionException) {
+        throw (MojoExecutionException) e.getCause();
       }
-      if (cdn == null) {
-        targetURL = "$1" + targetPath + query + "$3";
+      throw new MojoExecutionException("unable to fingerprint: " + canonicalPath, e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new MojoExecutionException("interrupted while fingerprinting: " + canonicalPath, e);
+    }
+  }
+
+  /**
+   * @return the digest of the content of a source file, minified first if it is
+   */
+  private String sourceDigest(File file, boolean minified) throws MojoExecutionException {
+    if (!minified) {
+      return generateFingerprint(file);
+    }
+    byte[] content = minify(file).getBytes(StandardCharsets.UTF_8);
+    long start = System.nanoTime();
+    String fingerprint = Utils.generateFingerprint(content, fingerprintAlgorithm);
+    metrics.time(BuildMetrics.Phase.HASH, start);
+    metrics.increment(BuildMetrics.Counter.DIGESTS_COMPUTED);
+    return fingerprint;
+  }
+
+  private String generateFingerprint(File file) throws MojoExecutionException {
+    String fingerprint = buildCache == null ? null : buildCache.getDigest(file);
+    if (fingerprint == null) {
+      long length = file.length();
+      long lastModified = file.lastModified();
+      long start = System.nanoTime();
+      // the line endings of text files are normalised, the same bytes under another extension have another digest
+      String sharedKey = !sharedCacheKeyMode.isCheaperThanDigest() ? null : sharedCacheKey(file,
+          fingerprintAlgorithm.name().toLowerCase(Locale.ROOT) + (Utils.isTextFile(file) ? "/text/" : "/binary/"), "");
+      fingerprint = sharedKey == null ? null : sharedCache.getDigest(sharedKey);
+      if (fingerprint == null) {
+        fingerprint = Utils.generateFingerprint(file, fingerprintAlgorithm);
+        metrics.increment(BuildMetrics.Counter.DIGESTS_COMPUTED);
+        if (sharedKey != null) {
+          sharedCache.putDigest(sharedKey, fingerprint);
+        }
       } else {
-        targetURL = "$1" + cdn + targetPath + query + "$3";
+        metrics.increment(BuildMetrics.Counter.DIGESTS_SHARED);
+      }
+      metrics.time(BuildMetrics.Phase.HASH, start);
+      metrics.add(BuildMetrics.Counter.BYTES_READ, length);
+      if (buildCache != null) {
+        buildCache.putDigest(file, length, lastModified, fingerprint);
       }
+    } else {
+      metrics.increment(BuildMetrics.Counter.DIGESTS_CACHED);
+    }
+    return fingerprint;
+  }
 
-      m.appendReplacement(outputFileData, targetURL);
+  private String truncate(String fingerprint) {
+    if (fingerprintLength != null && fingerprintLength.intValue() > 0
+        && fingerprintLength.intValue() < fingerprint.length()) {
+      return fingerprint.substring(0, fingerprintLength.intValue());
     }
-    m.appendTail(outputFileData);
-    return outputFileData;
+    return fingerprint;
   }
 
-  private boolean isExcluded(String path) {
-    if (excludeResources != null) {
-      for (String curExclude : excludeResources) {
-        if (path.contains(curExclude)) {
-          return true;
+  /**
+   * Groups the files hashed during the build by the digest of their source. A digest is not a proof, so the source of
+   * each file is compared with the first one of its group.
+   *
+   * @return the canonical paths of the byte identical files, at least two per group
+   */
+  List<List<String>> findDuplicates() throws MojoExecutionException {
+    Map<String, List<String>> byDigest = new TreeMap<>();
+    for (String canonicalPath : new TreeSet<>(digests.keySet())) {
+      byDigest.computeIfAbsent(sourceDigest(canonicalPath), d -> new ArrayList<>()).add(canonicalPath);
+    }
+    List<List<String>> duplicates = new ArrayList<>();
+    for (List<String> group : byDigest.values()) {
+      List<String> identical = new ArrayList<>();
+      identical.add(group.get(0));
+      for (int i = 1; i < group.size(); i++) {
+        try {
+          if (FileUtils.contentEquals(new File(group.get(0)), new File(group.get(i)))) {
+            identical.add(group.get(i));
+          }
+        } catch (IOException e) {
+          throw new MojoExecutionException("unable to compare: " + group.get(0) + " and " + group.get(i), e);
         }
       }
+      if (identical.size() > 1) {
+        duplicates.add(identical);
+      }
+    }
+    return duplicates;
+  }
+
+  /**
+   * @return the digest of the source of a file hashed during the build, which is the one it is fingerprinted with
+   *         unless it is processed or minified
+   */
+  private String sourceDigest(String canonicalPath) throws MojoExecutionException {
+    File file = new File(canonicalPath);
+    if (isMinified(file) || referenceGraph != null && referenceGraph.isOrdered(canonicalPath)) {
+      return generateFingerprint(file);
+    }
+    return digest(canonicalPath, file);
+  }
+
+  private void logDuplicates() throws MojoExecutionException {
+    List<List<String>> duplicates = findDuplicates();
+    long wasted = 0;
+    for (List<String> group : duplicates) {
+      long length = new File(group.get(0)).length();
+      wasted += length * (group.size() - 1);
+      getLog().warn("identical resources (" + length + " bytes each): " + String.join(", ", group));
+    }
+    getLog().info(duplicates.size() + " group(s) of identical resources, " + wasted + " byte(s) duplicated");
+  }
+
+  private boolean isExcluded(String path) {
+    return exclusions.computeIfAbsent(path, p -> exclusionMatcher.matches(p)).booleanValue();
+  }
+
+  /**
+   * Logs each excluded and missing link once, however many times it has been found, then forgets them.
+   */
+  private void logLinks() {
+    for (Map.Entry<String, AtomicInteger> excluded : new TreeMap<>(excludedLinks).entrySet()) {
+      getLog().info("resource excluded: " + excluded.getKey() + " (" + excluded.getValue().get()
+          + " occurrence(s))");
     }
-    return false;
+    for (Map.Entry<String, Set<String>> missing : new TreeMap<>(missingLinks).entrySet()) {
+      TreeSet<String> sources = new TreeSet<>(missing.getValue());
+      getLog().warn("resource file doesn't exist: " + missing.getKey() + " found in: " + sources.first()
+          + (sources.size() > 1 ? " and " + (sources.size() - 1) + " other file(s)" : ""));
+    }
+    excludedLinks.clear();
+    missingLinks.clear();
   }
 
   static String generateTargetResourceFilename(String sourceFilename, String fingerprint)
       throws MojoExecutionException {
+    return generateTargetResourceFilename(sourceFilename, fingerprint, FingerprintMode.QUERY);
+  }
+
+  static String generateTargetResourceFilename(String sourceFilename, String fingerprint, FingerprintMode mode)
+      throws MojoExecutionException {
     int index = sourceFilename.lastIndexOf("/");
-    if (index == -1) {
-      return sourceFilename + QUESTION_MARK + fingerprint;
-    }
+    String directory = index == -1 ? "" : sourceFilename.substring(0, index + 1);
     String filename = sourceFilename.substring(index + 1);
-    return sourceFilename.substring(0, index) + "/" + filename + QUESTION_MARK + fingerprint;
+    switch (mode) {
+    case FILENAME:
+      int extensionIndex = filename.lastIndexOf(".");
+      if (extensionIndex <= 0) {
+        return directory + filename + "." + fingerprint;
+      }
+      return directory + filename.substring(0, extensionIndex) + "." + fingerprint
+          + filename.substring(extensionIndex);
+    case DIRECTORY:
+      return directory + fingerprint + "/" + filename;
+    default:
+      return directory + filename + QUESTION_MARK + fingerprint;
+    }
+  }
+
+  /**
+   * Copies each resource referenced by the processed files to its fingerprinted name in the target directory. The
+   * processed resources are copied from their target as it holds the rewritten links, their relative links being
+   * rebased when the copy is in a directory of its own.
+   *
+   * @param resources
+   *          receives the resources to copy, in the same order as the returned futures
+   * @param only
+   *          canonical paths of the resources to copy, null to copy all of them
+   */
+  private List<Future<?>> copyFingerprintedResources(ExecutorService executor, List<File> resources,
+      Set<String> only) throws MojoExecutionException {
+    List<Future<?>> futures = new ArrayList<>();
+    for (Map.Entry<String, String> resource : getResources("copied").entrySet()) {
+      String relativePath = resource.getKey();
+      File source = new File(sourceDirectory, relativePath);
+      if (only != null && !only.contains(BuildCache.canonicalPath(source))) {
+        continue;
+      }
+      // the target of the processed and minified resources isn't a copy of their source
+      boolean rewritten = processedFiles.contains(new File(sourceDirectory, relativePath).getAbsolutePath());
+      boolean processed = rewritten || isMinified(source);
+      File target = new File(targetDirectory, relativePath);
+      File fingerprinted = new File(targetDirectory,
+          generateTargetResourceFilename(relativePath, resource.getValue(), linkMode));
+      resources.add(source);
+      futures.add(executor.submit(() -> {
+        File parent = fingerprinted.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory()) {
+          throw new MojoExecutionException("unable to create directory: " + parent.getAbsolutePath());
+        }
+        if (rewritten && linkMode == FingerprintMode.DIRECTORY) {
+          writeRebased(target, fingerprinted);
+        } else if (processed) {
+          // a link would be changed by the next build writing the target in place
+          Utils.copyFile(target, fingerprinted, CopyMode.COPY);
+        } else {
+          Utils.copyFile(source, fingerprinted, fileCopyMode);
+        }
+        compress(fingerprinted);
+        return null;
+      }));
+    }
+    return futures;
+  }
+
+  /**
+   * Writes the copy of a processed target one directory deeper than the target, so with its relative links going
+   * one directory up.
+   */
+  private void writeRebased(File target, File copy) throws MojoExecutionException {
+    LinkRewriter.LinkHandler handler = link -> NOT_RELATIVE.matcher(link).lookingAt() ? link : "../" + link;
+    if (isStreamed(target)) {
+      try (Reader reader = cpuStage.reader(Utils.newReader(target));
+          TargetWriter writer = new TargetWriter(copy, skipUnchangedWrites)) {
+        CpuStage.Output chunks = cpuStage.output(writer);
+        cpuStage.enter();
+        try {
+          linkRewriter.rewriteTo(reader, streamingWindow, handler, chunks, null);
+        } finally {
+          cpuStage.exit();
+        }
+        chunks.flush();
+        writer.finish();
+      } catch (IOException e) {
+        throw new MojoExecutionException("unable to write in file: " + copy.getAbsolutePath(), e);
+      }
+      return;
+    }
+    CharSequence data = Utils.readChars(target);
+    cpuStage.enter();
+    try {
+      data = linkRewriter.rewrite(data, handler);
+    } finally {
+      cpuStage.exit();
+    }
+    Utils.writeInFile(data, copy, skipUnchangedWrites);
   }
 
   static String stripSourceDirectory(File sourceDirectory, File file) {
     return file.getAbsolutePath().substring(sourceDirectory.getAbsolutePath().length());
   }
 
-  private void copyDeepFiles(File srcDir, File dstDir) throws MojoExecutionException {
-    File[] srcFiles = srcDir.listFiles();
-    for (File curFile : srcFiles) {
-      if (curFile.isDirectory()) {
-        copyDeepFiles(curFile, new File(dstDir, curFile.getName()));
-        continue;
-      }
+  void copyDeepFiles(File srcDir, File dstDir) throws MojoExecutionException {
+    ExecutorService executor = newExecutor();
+    try {
+      List<File> filesToCopy = new ArrayList<>();
+      waitFor(copyDeepFiles(srcDir, dstDir, executor, filesToCopy), filesToCopy, "copy");
+    } finally {
+      executor.shutdownNow();
+    }
+  }
 
-      if (processedFiles.contains(curFile.getAbsolutePath())) {
+  /**
+   * Walks the source directory once, creating the directories as they are visited and submitting the copy of the
+   * files which are not processed.
+   *
+   * @param filesToCopy
+   *          receives the files to copy, in the same order as the returned futures
+   */
+  private List<Future<?>> copyDeepFiles(File srcDir, File dstDir, ExecutorService executor, List<File> filesToCopy)
+      throws MojoExecutionException {
+    Path source = srcDir.toPath();
+    Path target = dstDir.toPath();
+    List<Future<?>> futures = new ArrayList<>();
+    try {
+      Files.walkFileTree(source, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE,
+          new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+              long start = System.nanoTime();
+              Files.createDirectories(target.resolve(source.relativize(dir)));
+              metrics.time(BuildMetrics.Phase.MKDIRS, start);
+              return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+              File curFile = file.toFile();
+              if (!processedFiles.contains(curFile.getAbsolutePath())) {
+                File targetFile = target.resolve(source.relativize(file)).toFile();
+                filesToCopy.add(curFile);
+                futures.add(executor.submit(() -> {
+                  copyResource(curFile, targetFile);
+                  return null;
+                }));
+              }
+              return FileVisitResult.CONTINUE;
+            }
+          });
+    } catch (IOException e) {
+      throw new MojoExecutionException("unable to copy: " + srcDir.getAbsolutePath(), e);
+    }
+    return futures;
+  }
+
+  /**
+   * Copies a file which is not processed, minifying it if needed.
+   */
+  private void copyResource(File curFile, File targetFile) throws MojoExecutionException {
+    if (reportDuplicates) {
+      digest(BuildCache.canonicalPath(curFile), curFile);
+    }
+    long start = System.nanoTime();
+    boolean written;
+    if (isMinified(curFile)) {
+      Utils.unlink(curFile, targetFile);
+      written = Utils.writeInFile(minify(curFile), targetFile, skipUnchangedWrites);
+    } else {
+      written = Utils.copyFile(curFile, targetFile, fileCopyMode);
+    }
+    metrics.time(BuildMetrics.Phase.COPY, start);
+    if (written) {
+      metrics.increment(BuildMetrics.Counter.FILES_COPIED);
+    }
+    compress(targetFile);
+  }
+
+  /**
+   * @param action
+   *          what isn't done for the resources outside of the source directory, for the warning
+   * @return fingerprint of the resources referenced by the processed files and the files up to date, keyed by their
+   *         path relative to the source directory
+   */
+  private Map<String, String> getResources(String action) throws MojoExecutionException {
+    String sourcePath = BuildCache.canonicalPath(sourceDirectory) + File.separator;
+    Map<String, String> referenced = buildCache == null ? new TreeMap<>() : buildCache.getResources();
+    referenced.putAll(referencedResources);
+    Map<String, String> resources = new TreeMap<>();
+    for (Map.Entry<String, String> resource : referenced.entrySet()) {
+      String filePath = resource.getKey();
+      if (!filePath.startsWith(sourcePath)) {
+        getLog().warn("resource outside of the source directory not " + action + ": " + filePath);
         continue;
       }
+      resources.put(filePath.substring(sourcePath.length()).replace(File.separatorChar, '/'), resource.getValue());
+    }
+    return resources;
+  }
 
-      try (FileInputStream fis = new FileInputStream(curFile);
-          FileOutputStream fos = new FileOutputStream(new File(dstDir, curFile.getName()));) {
-        IOUtils.copy(fis, fos);
-      } catch (Exception e) {
-        throw new MojoExecutionException("unable to copy", e);
+  private void writeManifest(AssetManifest.Format format) throws MojoExecutionException {
+    Map<String, String> resources = getResources("added to the manifest");
+    try (AssetManifest assetManifest = new AssetManifest(manifest, format, resources.size())) {
+      for (Map.Entry<String, String> resource : resources.entrySet()) {
+        String relativePath = resource.getKey();
+        assetManifest.add(relativePath, generateTargetResourceFilename(relativePath, resource.getValue(), linkMode),
+            resource.getValue(), new File(targetDirectory, relativePath).length());
       }
+      assetManifest.commit();
+    } catch (IOException e) {
+      throw new MojoExecutionException("unable to write manifest: " + manifest.getAbsolutePath(), e);
     }
+    getLog().info(resources.size() + " resource(s) written to manifest: " + manifest.getAbsolutePath());
   }
 
   private List<File> findFilesToOptimize(File source) {
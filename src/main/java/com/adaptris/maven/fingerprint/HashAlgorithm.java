@@ -0,0 +1,127 @@
+package com.adaptris.maven.fingerprint;
+
+import java.security.MessageDigest;
+import java.util.Locale;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.codec.digest.PureJavaCrc32C;
+import org.apache.commons.codec.digest.XXHash32;
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * Algorithms used to fingerprint resources.
+ * <p>
+ * MD5 and the SHA family are cryptographic digests. CRC32, CRC32C and xxHash32 are much cheaper, give 8 hexadecimal
+ * characters and are good enough to detect that a resource has changed.
+ * </p>
+ */
+public enum HashAlgorithm {
+  MD5 {
+    @Override
+    Hasher newHasher() {
+      return new DigestHasher(DigestUtils.getMd5Digest());
+    }
+  },
+  SHA1 {
+    @Override
+    Hasher newHasher() {
+      return new DigestHasher(DigestUtils.getSha1Digest());
+    }
+  },
+  SHA256 {
+    @Override
+    Hasher newHasher() {
+      return new DigestHasher(DigestUtils.getSha256Digest());
+    }
+  },
+  SHA512 {
+    @Override
+    Hasher newHasher() {
+      return new DigestHasher(DigestUtils.getSha512Digest());
+    }
+  },
+  CRC32 {
+    @Override
+    Hasher newHasher() {
+      return new ChecksumHasher(new CRC32());
+    }
+  },
+  CRC32C {
+    @Override
+    Hasher newHasher() {
+      return new ChecksumHasher(new PureJavaCrc32C());
+    }
+  },
+  XXHASH32 {
+    @Override
+    Hasher newHasher() {
+      return new ChecksumHasher(new XXHash32());
+    }
+  };
+
+  abstract Hasher newHasher();
+
+  /**
+   * @param value
+   *          name of the algorithm, case and dashes are ignored so both SHA-256 and sha256 are accepted
+   */
+  public static HashAlgorithm parse(String value) throws MojoExecutionException {
+    try {
+      return valueOf(value.trim().replace("-", "").replace("_", "").toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      throw new MojoExecutionException("unknown hash algorithm: " + value, e);
+    }
+  }
+
+  /**
+   * Hash being computed.
+   */
+  interface Hasher {
+
+    void update(byte[] buffer, int offset, int length);
+
+    /**
+     * @return the hash as lower case hexadecimal
+     */
+    String hex();
+  }
+
+  private static class DigestHasher implements Hasher {
+    private final MessageDigest digest;
+
+    DigestHasher(MessageDigest digest) {
+      this.digest = digest;
+    }
+
+    @Override
+    public void update(byte[] buffer, int offset, int length) {
+      digest.update(buffer, offset, length);
+    }
+
+    @Override
+    public String hex() {
+      return Hex.encodeHexString(digest.digest());
+    }
+  }
+
+  private static class ChecksumHasher implements Hasher {
+    private final Checksum checksum;
+
+    ChecksumHasher(Checksum checksum) {
+      this.checksum = checksum;
+    }
+
+    @Override
+    public void update(byte[] buffer, int offset, int length) {
+      checksum.update(buffer, offset, length);
+    }
+
+    @Override
+    public String hex() {
+      return String.format("%08x", checksum.getValue());
+    }
+  }
+}
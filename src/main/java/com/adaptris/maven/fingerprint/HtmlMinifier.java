@@ -0,0 +1,259 @@
+package com.adaptris.maven.fingerprint;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Removes the whitespace between tags of html and jsp content as it is appended, without building any tree.
+ * <p>
+ * The content of <code>pre</code>, <code>textarea</code>, <code>script</code> and <code>style</code> elements, html
+ * comments and jsp scriptlets, expressions and directives are kept as they are. Whitespace next to text is kept as
+ * well, only whitespace with a tag on both sides is removed. Jsp scriptlets and expressions may write text, the
+ * whitespace between one of them and a tag is collapsed to a single space. <code>type="text"</code> is removed from
+ * <code>input</code> tags since it is the default type.
+ * </p>
+ * <p>
+ * {@link #finish()} must be called once everything has been appended.
+ * </p>
+ */
+public class HtmlMinifier implements Appendable {
+
+  private static final Set<String> RAW_ELEMENTS = new HashSet<>(Arrays.asList("pre", "textarea", "script", "style"));
+  private static final Pattern INPUT_TYPE_TEXT = Pattern.compile("\\s+type\\s*=\\s*([\"'])text\\1",
+      Pattern.CASE_INSENSITIVE);
+
+  private enum State {
+    TEXT, TAG, COMMENT, SCRIPTLET, RAW
+  }
+
+  private final Appendable output;
+  private State state = State.TEXT;
+  private final StringBuilder whitespace = new StringBuilder();
+  private final StringBuilder buffer = new StringBuilder();
+  private boolean afterTag;
+  // the last tag is a jsp scriptlet or expression, which may write text
+  private boolean afterScriptlet;
+  // the whitespace between the last tag and the current one, not written yet
+  private boolean skippedWhitespace;
+  private boolean scriptletInline;
+  private char quote;
+  private boolean tagScriptlet;
+  // the last two characters appended
+  private char previous;
+  private char beforePrevious;
+  private String rawEnd;
+
+  public HtmlMinifier(Appendable output) {
+    this.output = output;
+  }
+
+  /**
+   * @return the minified content
+   */
+  public static String minify(CharSequence html) {
+    StringBuilder output = new StringBuilder(html.length());
+    HtmlMinifier minifier = new HtmlMinifier(output);
+    try {
+      minifier.append(html).finish();
+    } catch (IOException e) {
+      // a StringBuilder doesn't throw
+      throw new IllegalStateException(e);
+    }
+    return output.toString();
+  }
+
+  @Override
+  public HtmlMinifier append(CharSequence csq) throws IOException {
+    CharSequence value = csq == null ? "null" : csq;
+    return append(value, 0, value.length());
+  }
+
+  @Override
+  public HtmlMinifier append(CharSequence csq, int start, int end) throws IOException {
+    CharSequence value = csq == null ? "null" : csq;
+    for (int i = start; i < end; i++) {
+      append(value.charAt(i));
+    }
+    return this;
+  }
+
+  @Override
+  public HtmlMinifier append(char c) throws IOException {
+    char last = previous;
+    char beforeLast = beforePrevious;
+    beforePrevious = previous;
+    previous = c;
+    switch (state) {
+    case TAG:
+      appendToTag(c, last);
+      break;
+    case COMMENT:
+      output.append(c);
+      if (beforeLast == '-' && last == '-' && c == '>') {
+        endOfTag();
+      }
+      break;
+    case SCRIPTLET:
+      output.append(c);
+      if (last == '%' && c == '>') {
+        endOfTag();
+        afterScriptlet = scriptletInline;
+      }
+      break;
+    case RAW:
+      appendToRaw(c);
+      break;
+    default:
+      appendToText(c);
+      break;
+    }
+    return this;
+  }
+
+  /**
+   * Writes what is still pending.
+   */
+  public void finish() throws IOException {
+    output.append(whitespace);
+    output.append(buffer);
+    whitespace.setLength(0);
+    buffer.setLength(0);
+  }
+
+  private void appendToText(char c) throws IOException {
+    if (Character.isWhitespace(c)) {
+      whitespace.append(c);
+      return;
+    }
+    if (c != '<' || !afterTag) {
+      output.append(whitespace);
+    } else if (whitespace.length() > 0 && afterScriptlet) {
+      output.append(' ');
+    }
+    skippedWhitespace = c == '<' && afterTag && !afterScriptlet && whitespace.length() > 0;
+    whitespace.setLength(0);
+    if (c == '<') {
+      state = State.TAG;
+      buffer.append(c);
+      quote = 0;
+      tagScriptlet = false;
+    } else {
+      output.append(c);
+      afterTag = false;
+    }
+  }
+
+  private void appendToTag(char c, char last) throws IOException {
+    buffer.append(c);
+    int length = buffer.length();
+    if (length == 3 && buffer.charAt(1) == '%') {
+      // directives and jsp comments don't write anything
+      scriptletInline = c != '@' && c != '-';
+      if (scriptletInline && skippedWhitespace) {
+        output.append(' ');
+      }
+      output.append(buffer);
+      buffer.setLength(0);
+      // the current character is the first one of the scriptlet, so that <%> doesn't end it
+      state = State.SCRIPTLET;
+      return;
+    }
+    if (length == 2) {
+      if (c == '%') {
+        // a jsp scriptlet, expression, directive or comment, known from the next character
+        return;
+      } else if (!Character.isLetter(c) && c != '/' && c != '!' && c != '?') {
+        // not a tag: a < in text
+        buffer.setLength(0);
+        output.append('<');
+        afterTag = false;
+        state = State.TEXT;
+        appendToText(c);
+      }
+      return;
+    }
+    if (length == 4 && "<!--".contentEquals(buffer)) {
+      output.append(buffer);
+      buffer.setLength(0);
+      state = State.COMMENT;
+      // so that <!--> doesn't end the comment
+      previous = 0;
+      beforePrevious = 0;
+      return;
+    }
+    if (tagScriptlet) {
+      tagScriptlet = !(last == '%' && c == '>');
+    } else if (quote != 0) {
+      if (c == quote) {
+        quote = 0;
+      }
+    } else if (c == '"' || c == '\'') {
+      quote = c;
+    } else if (last == '<' && c == '%') {
+      tagScriptlet = true;
+    } else if (c == '>') {
+      endOfTag(buffer.toString());
+      buffer.setLength(0);
+    }
+  }
+
+  private void endOfTag(String tag) throws IOException {
+    boolean closing = tag.charAt(1) == '/';
+    int nameEnd = closing ? 2 : 1;
+    while (nameEnd < tag.length() && isNameChar(tag.charAt(nameEnd))) {
+      nameEnd++;
+    }
+    String name = tag.substring(closing ? 2 : 1, nameEnd).toLowerCase(Locale.ROOT);
+    if (!closing && "input".equals(name)) {
+      tag = INPUT_TYPE_TEXT.matcher(tag).replaceAll("");
+    }
+    output.append(tag);
+    endOfTag();
+    if (!closing && RAW_ELEMENTS.contains(name) && !tag.endsWith("/>")) {
+      state = State.RAW;
+      rawEnd = "</" + name;
+    }
+  }
+
+  private void endOfTag() {
+    state = State.TEXT;
+    afterTag = true;
+    afterScriptlet = false;
+  }
+
+  private void appendToRaw(char c) throws IOException {
+    if (buffer.length() == 0) {
+      if (c == '<') {
+        buffer.append(c);
+      } else {
+        output.append(c);
+      }
+      return;
+    }
+    int index = buffer.length();
+    if (index < rawEnd.length()) {
+      if (Character.toLowerCase(c) == rawEnd.charAt(index)) {
+        buffer.append(c);
+        return;
+      }
+    } else if (Character.isWhitespace(c) || c == '>' || c == '/') {
+      // end of the element, the closing tag is handled as any other tag
+      state = State.TAG;
+      quote = 0;
+      tagScriptlet = false;
+      appendToTag(c, buffer.charAt(buffer.length() - 1));
+      return;
+    }
+    output.append(buffer);
+    buffer.setLength(0);
+    appendToRaw(c);
+  }
+
+  private static boolean isNameChar(char c) {
+    return Character.isLetterOrDigit(c) || c == ':' || c == '-' || c == '_' || c == '.';
+  }
+}
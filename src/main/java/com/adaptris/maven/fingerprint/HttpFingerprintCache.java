@@ -0,0 +1,167 @@
+package com.adaptris.maven.fingerprint;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.SocketException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * Fingerprint cache behind an http server, e.g. an artifact store.
+ * <p>
+ * An entry is read with a GET and written with a PUT of <code>digests/&lt;key&gt;</code> or
+ * <code>contents/&lt;key&gt;</code> relative to the base url, a 404 meaning that there is no entry. Digests are sent as
+ * utf-8 text, contents as they are. The server is expected to make an entry visible once completely written.
+ * </p>
+ */
+public class HttpFingerprintCache implements FingerprintCache {
+
+  private static final int TIMEOUT = 10000;
+
+  private final String baseUrl;
+
+  public HttpFingerprintCache(String baseUrl) throws MojoExecutionException {
+    this.baseUrl = baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
+    try {
+      new URL(this.baseUrl);
+    } catch (IOException e) {
+      throw new MojoExecutionException("invalid fingerprint cache url: " + baseUrl, e);
+    }
+  }
+
+  public String getBaseUrl() {
+    return baseUrl;
+  }
+
+  @Override
+  public String getDigest(String key) throws IOException {
+    HttpURLConnection connection = open("digests", key, "GET");
+    try {
+      if (!found(connection)) {
+        return null;
+      }
+      try (InputStream is = connection.getInputStream()) {
+        return IOUtils.toString(is, StandardCharsets.UTF_8).trim();
+      }
+    } finally {
+      release(connection);
+    }
+  }
+
+  @Override
+  public void putDigest(String key, String digest) throws IOException {
+    byte[] bytes = digest.getBytes(StandardCharsets.UTF_8);
+    put("digests", key, "text/plain; charset=utf-8", bytes.length, os -> os.write(bytes));
+  }
+
+  @Override
+  public boolean getContent(String key, File target) throws IOException {
+    HttpURLConnection connection = open("contents", key, "GET");
+    try {
+      if (!found(connection)) {
+        return false;
+      }
+      Path parent = target.getAbsoluteFile().toPath().getParent();
+      Files.createDirectories(parent);
+      Path tmp = Files.createTempFile(parent, "." + target.getName(), ".tmp");
+      try {
+        try (InputStream is = connection.getInputStream()) {
+          Files.copy(is, tmp, StandardCopyOption.REPLACE_EXISTING);
+        }
+        try {
+          Files.move(tmp, target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+          Files.move(tmp, target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+      } finally {
+        Files.deleteIfExists(tmp);
+      }
+      return true;
+    } finally {
+      release(connection);
+    }
+  }
+
+  @Override
+  public void putContent(String key, File source) throws IOException {
+    put("contents", key, "application/octet-stream", source.length(), os -> Files.copy(source.toPath(), os));
+  }
+
+  /**
+   * Sends the entry once more when the connection kept alive from a previous request has been closed by the server,
+   * which a streamed request isn't by {@link HttpURLConnection} itself.
+   */
+  private void put(String kind, String key, String contentType, long length, Body body) throws IOException {
+    for (int attempt = 1;; attempt++) {
+      HttpURLConnection connection = open(kind, key, "PUT");
+      try {
+        connection.setDoOutput(true);
+        connection.setFixedLengthStreamingMode(length);
+        connection.setRequestProperty("Content-Type", contentType);
+        try (OutputStream os = connection.getOutputStream()) {
+          body.write(os);
+        }
+        int status = connection.getResponseCode();
+        if (status / 100 != 2) {
+          throw new IOException("unable to store " + key + ", status " + status + " for: " + connection.getURL());
+        }
+        return;
+      } catch (SocketException e) {
+        if (attempt > 1) {
+          throw e;
+        }
+        connection.disconnect();
+      } finally {
+        release(connection);
+      }
+    }
+  }
+
+  private HttpURLConnection open(String kind, String key, String method) throws IOException {
+    FingerprintCache.checkKey(key);
+    HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + kind + "/" + key).openConnection();
+    connection.setConnectTimeout(TIMEOUT);
+    connection.setReadTimeout(TIMEOUT);
+    connection.setUseCaches(false);
+    connection.setRequestMethod(method);
+    return connection;
+  }
+
+  /**
+   * Reads what is left of the response so that the connection is kept alive for the next request.
+   */
+  private static void release(HttpURLConnection connection) {
+    try (InputStream is = connection.getErrorStream()) {
+      if (is != null) {
+        IOUtils.skip(is, Long.MAX_VALUE);
+      }
+    } catch (IOException e) {
+      connection.disconnect();
+    }
+  }
+
+  private static boolean found(HttpURLConnection connection) throws IOException {
+    int status = connection.getResponseCode();
+    if (status == HttpURLConnection.HTTP_NOT_FOUND) {
+      return false;
+    }
+    if (status != HttpURLConnection.HTTP_OK) {
+      throw new IOException("unexpected status " + status + " for: " + connection.getURL());
+    }
+    return true;
+  }
+
+  private interface Body {
+    void write(OutputStream os) throws IOException;
+  }
+}
@@ -0,0 +1,472 @@
+package com.adaptris.maven.fingerprint;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * Rewrites the links found by a set of patterns in a single scan of the data.
+ * <p>
+ * Every pattern must be of the form (group1 before url)(group2 url)(group3 after url). Instead of running every
+ * pattern over the whole data, the data is scanned once looking for the literal prefix every pattern starts with
+ * (<code>&lt;link</code>, <code>url(</code>, <code>fromUrl:</code>...) and a pattern is only tried where its prefix
+ * has been found. The links are the ones running each pattern over the whole data would find: every pattern is
+ * tried at every position, a pattern only matching again from the end of its previous match, so a link found inside
+ * the match of another pattern, e.g. a css url in the style attribute of an image, is still rewritten. Only the url
+ * (group 2) of a match is replaced. A url found by several patterns, e.g. the value of a
+ * <code>&lt;c:url&gt;</code> ending with .js, is rewritten once, by the first pattern finding it.
+ * </p>
+ * <p>
+ * Patterns which don't start with a literal are tried at every position.
+ * </p>
+ */
+public class LinkRewriter {
+
+  private static final int URL_GROUP = 2;
+  private static final String QUANTIFIERS = "?*+{";
+  private static final String METACHARACTERS = "\\[]().*+?{}|^$";
+
+  private final Pattern[] patterns;
+  private final String[] prefixes;
+  private final boolean[] firstChars = new boolean[Character.MAX_VALUE + 1];
+  private final boolean scanAll;
+  private final boolean builtInTokenizers;
+
+  public LinkRewriter(Collection<Pattern> patterns) throws MojoExecutionException {
+    this(patterns, true);
+  }
+
+  /**
+   * @param builtInTokenizers
+   *          false to run the default patterns through their regular expression as well
+   */
+  LinkRewriter(Collection<Pattern> patterns, boolean builtInTokenizers) throws MojoExecutionException {
+    this.builtInTokenizers = builtInTokenizers;
+    this.patterns = patterns.toArray(new Pattern[patterns.size()]);
+    prefixes = new String[this.patterns.length];
+    boolean withoutPrefix = false;
+    for (int i = 0; i < this.patterns.length; i++) {
+      Pattern pattern = this.patterns[i];
+      if (pattern.matcher("").groupCount() < URL_GROUP) {
+        throw new MojoExecutionException("pattern should have at least " + URL_GROUP + " groups: " + pattern);
+      }
+      prefixes[i] = literalPrefix(pattern);
+      if (prefixes[i].isEmpty()) {
+        withoutPrefix = true;
+      } else {
+        firstChars[prefixes[i].charAt(0)] = true;
+      }
+    }
+    scanAll = withoutPrefix;
+  }
+
+  /**
+   * Replaces every url found in data by the value returned by the handler.
+   *
+   * @return the rewritten data, data itself if no link has been found
+   */
+  public CharSequence rewrite(CharSequence data, LinkHandler handler) throws MojoExecutionException {
+    Appendable output = rewrite(data, handler, null, null);
+    return output == null ? data : (CharSequence) output;
+  }
+
+  /**
+   * Replaces every url found in data by the value returned by the handler, appending the rewritten data to output as
+   * it is scanned.
+   */
+  public void rewriteTo(CharSequence data, LinkHandler handler, Appendable output) throws MojoExecutionException {
+    rewrite(data, handler, output, null);
+  }
+
+  /**
+   * Same as {@link #rewriteTo(CharSequence, LinkHandler, Appendable)}, adding the links found by each pattern and the
+   * time spent trying it to the statistics.
+   */
+  public void rewriteTo(CharSequence data, LinkHandler handler, Appendable output, Statistics statistics)
+      throws MojoExecutionException {
+    rewrite(data, handler, output, statistics);
+  }
+
+  /**
+   * @return the patterns in the order they are tried, the index of a pattern being its index in the statistics
+   */
+  public List<Pattern> getPatterns() {
+    return Collections.unmodifiableList(Arrays.asList(patterns));
+  }
+
+  /**
+   * Replaces every url found in the data read from input by the value returned by the handler, appending the
+   * rewritten data to output as it is read, through a buffer of twice the window whatever the length of the data.
+   * <p>
+   * A link is only looked for once the window following its start has been read, so the links are the ones found in
+   * the whole data as long as no match of a pattern is longer than the window, longer matches may not be found.
+   * </p>
+   *
+   * @param window
+   *          longest match of a pattern, in chars
+   * @param output
+   *          null to only call the handler
+   * @param statistics
+   *          null when not needed
+   */
+  public void rewriteTo(Reader input, int window, LinkHandler handler, Appendable output, Statistics statistics)
+      throws MojoExecutionException {
+    if (window < 1) {
+      throw new MojoExecutionException("window should be at least one char: " + window);
+    }
+    char[] buffer = new char[2 * window];
+    int length = 0;
+    boolean end = false;
+    Scan scan = new Scan(output, false, patterns.length);
+    try {
+      while (true) {
+        while (!end && length < buffer.length) {
+          int read = input.read(buffer, length, buffer.length - length);
+          if (read == -1) {
+            end = true;
+          } else {
+            length += read;
+          }
+        }
+        CharBuffer data = CharBuffer.wrap(buffer, 0, length);
+        scan(scan, data, end ? length : length - window, handler, statistics);
+        if (end) {
+          scan.emit(data, length + 1);
+          if (output != null) {
+            output.append(data, scan.copied, length);
+          }
+          return;
+        }
+        // nothing before the scan position changes anymore
+        int done = scan.pos;
+        scan.emit(data, done);
+        if (output != null && scan.copied < done) {
+          output.append(data, scan.copied, done);
+        }
+        System.arraycopy(buffer, done, buffer, 0, length - done);
+        length -= done;
+        scan.shift(done);
+      }
+    } catch (IOException e) {
+      throw new MojoExecutionException("unable to rewrite data", e);
+    }
+  }
+
+  /**
+   * @param output
+   *          null to only create a StringBuilder once a link has changed
+   * @param statistics
+   *          null when not needed
+   * @return the output, null if none was given and no link has changed
+   */
+  private Appendable rewrite(CharSequence data, LinkHandler handler, Appendable output, Statistics statistics)
+      throws MojoExecutionException {
+    Scan scan = new Scan(output, output == null, patterns.length);
+    int length = data.length();
+    try {
+      scan(scan, data, length, handler, statistics);
+      scan.emit(data, length + 1);
+      if (scan.output != null) {
+        scan.output.append(data, scan.copied, length);
+      }
+    } catch (IOException e) {
+      throw new MojoExecutionException("unable to write rewritten data", e);
+    }
+    return scan.output;
+  }
+
+  /**
+   * Looks for links at each position of the data from the one of the scan until the limit, appending the data
+   * before each changed link and the new link to the output.
+   */
+  private void scan(Scan scan, CharSequence data, int limit, LinkHandler handler, Statistics statistics)
+      throws IOException, MojoExecutionException {
+    LinkTokenizer[] tokenizers = new LinkTokenizer[patterns.length];
+    int pos = scan.pos;
+    while (pos < limit) {
+      if (!scanAll && !firstChars[data.charAt(pos)]) {
+        pos++;
+        continue;
+      }
+      // the urls found so far before the position are final, a url found from now on starting after it
+      scan.emit(data, pos);
+      for (int i = 0; i < patterns.length; i++) {
+        LinkTokenizer tokenizer = lookingAt(tokenizers, i, scan, data, pos, statistics);
+        if (tokenizer != null) {
+          scan.matchEnds[i] = tokenizer.matchEnd();
+          scan.add(data, tokenizer.urlStart(), tokenizer.urlEnd(), handler);
+        }
+      }
+      pos++;
+    }
+    scan.pos = pos;
+  }
+
+  /**
+   * @return the tokenizer of the pattern if a link of the pattern starts at the position, null otherwise
+   */
+  private LinkTokenizer lookingAt(LinkTokenizer[] tokenizers, int i, Scan scan, CharSequence data, int pos,
+      Statistics statistics) {
+    if (pos < scan.matchEnds[i] || !startsWith(data, pos, prefixes[i])) {
+      return null;
+    }
+    LinkTokenizer tokenizer = tokenizers[i];
+    if (tokenizer == null) {
+      tokenizer = LinkTokenizer.create(patterns[i], data, builtInTokenizers);
+      tokenizers[i] = tokenizer;
+    }
+    // the clock is only read for the statistics asking for the time, this being done for most candidates
+    boolean timed = statistics != null && statistics.nanos != null;
+    long start = timed ? System.nanoTime() : 0;
+    boolean found = tokenizer.lookingAt(pos);
+    if (timed) {
+      statistics.nanos[i] += System.nanoTime() - start;
+    }
+    if (found && statistics != null) {
+      statistics.links[i]++;
+    }
+    return found ? tokenizer : null;
+  }
+
+  private static boolean startsWith(CharSequence data, int pos, String prefix) {
+    if (pos + prefix.length() > data.length()) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length(); i++) {
+      if (data.charAt(pos + i) != prefix.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return the literal every match of the pattern starts with, an empty string if it can't be determined
+   */
+  static String literalPrefix(Pattern pattern) {
+    if ((pattern.flags() & (Pattern.CASE_INSENSITIVE | Pattern.COMMENTS | Pattern.LITERAL)) != 0) {
+      return "";
+    }
+    String regex = pattern.pattern();
+    StringBuilder prefix = new StringBuilder();
+    // length of the prefix when each enclosing group has been opened
+    List<Integer> groupStarts = new ArrayList<>();
+    int i = 0;
+    while (i < regex.length()) {
+      char cur = regex.charAt(i);
+      int literalLength = prefix.length();
+      if (cur == '(') {
+        if (i + 1 < regex.length() && regex.charAt(i + 1) == '?') {
+          break;
+        }
+        groupStarts.add(prefix.length());
+        i++;
+        continue;
+      } else if (cur == ')') {
+        if (groupStarts.isEmpty()) {
+          break;
+        }
+        int groupStart = groupStarts.remove(groupStarts.size() - 1);
+        i++;
+        if (isQuantified(regex, i)) {
+          prefix.setLength(groupStart);
+          break;
+        }
+        continue;
+      } else if (cur == '\\') {
+        if (i + 1 >= regex.length() || Character.isLetterOrDigit(regex.charAt(i + 1))) {
+          break;
+        }
+        prefix.append(regex.charAt(i + 1));
+        i += 2;
+      } else if (METACHARACTERS.indexOf(cur) != -1) {
+        break;
+      } else {
+        prefix.append(cur);
+        i++;
+      }
+      if (isQuantified(regex, i)) {
+        prefix.setLength(literalLength);
+        break;
+      }
+    }
+    // an alternative of a group still open, or of the whole pattern, may start differently
+    int depth = groupStarts.size();
+    int minDepth = depth;
+    boolean inClass = false;
+    for (; i < regex.length(); i++) {
+      char cur = regex.charAt(i);
+      if (cur == '\\') {
+        i++;
+      } else if (inClass) {
+        inClass = cur != ']';
+      } else if (cur == '[') {
+        inClass = true;
+      } else if (cur == '(') {
+        depth++;
+      } else if (cur == ')') {
+        depth--;
+        minDepth = Math.min(minDepth, depth);
+      } else if (cur == '|' && depth <= minDepth) {
+        prefix.setLength(Math.min(prefix.length(), depth == 0 ? 0 : groupStarts.get(depth - 1)));
+      }
+    }
+    return prefix.toString();
+  }
+
+  private static boolean isQuantified(String regex, int index) {
+    return index < regex.length() && QUANTIFIERS.indexOf(regex.charAt(index)) != -1;
+  }
+
+  /**
+   * Where a scan is, in the data it is scanning.
+   * <p>
+   * A match may start before the url of a match found earlier by another pattern, so the urls found are kept in the
+   * order of their start until the scan has gone past it, then appended to the output.
+   * </p>
+   */
+  private static class Scan {
+    private Appendable output;
+    private final boolean createOutput;
+    // first position to look for a link at
+    private int pos;
+    // end of the data appended to the output
+    private int copied;
+    // end of the urls appended, a url found before it has been found by another pattern
+    private int handled;
+    // end of the last match of each pattern, where it may match again
+    private final int[] matchEnds;
+    // urls found but not appended yet, by start
+    private final List<Url> urls = new ArrayList<>();
+
+    Scan(Appendable output, boolean createOutput, int patterns) {
+      this.output = output;
+      this.createOutput = createOutput;
+      matchEnds = new int[patterns];
+    }
+
+    /**
+     * Keeps the url between start and end with its new value, unless another pattern has found it.
+     */
+    void add(CharSequence data, int start, int end, LinkHandler handler) throws MojoExecutionException {
+      if (start < handled) {
+        return;
+      }
+      int index = urls.size();
+      while (index > 0 && urls.get(index - 1).start >= start) {
+        index--;
+      }
+      if (index > 0 && urls.get(index - 1).end > start
+          || index < urls.size() && (urls.get(index).start < end || urls.get(index).start == start)) {
+        return;
+      }
+      String link = data.subSequence(start, end).toString();
+      urls.add(index, new Url(start, end, link, handler.handle(link)));
+    }
+
+    /**
+     * Appends the data up to the urls starting before the position, with their new values, to the output.
+     */
+    void emit(CharSequence data, int position) throws IOException {
+      while (!urls.isEmpty() && urls.get(0).start < position) {
+        Url url = urls.remove(0);
+        handled = url.end;
+        if (url.link.equals(url.newLink)) {
+          continue;
+        }
+        if (output == null && createOutput) {
+          output = new StringBuilder(data.length() + data.length() / 16);
+        }
+        if (output != null) {
+          output.append(data, copied, url.start).append(url.newLink);
+        }
+        copied = url.end;
+      }
+    }
+
+    /**
+     * Moves the positions after the first chars of the data have been dropped.
+     */
+    void shift(int count) {
+      pos -= count;
+      copied = Math.max(copied - count, 0);
+      handled = Math.max(handled - count, 0);
+      for (int i = 0; i < matchEnds.length; i++) {
+        matchEnds[i] = Math.max(matchEnds[i] - count, 0);
+      }
+      for (Url url : urls) {
+        url.start -= count;
+        url.end -= count;
+      }
+    }
+  }
+
+  /**
+   * A url found in the data and its new value.
+   */
+  private static class Url {
+    private int start;
+    private int end;
+    private final String link;
+    private final String newLink;
+
+    Url(int start, int end, String link, String newLink) {
+      this.start = start;
+      this.end = end;
+      this.link = link;
+      this.newLink = newLink;
+    }
+  }
+
+  /**
+   * Links found by each pattern and time spent trying it, in nanoseconds, for one thread.
+   */
+  public static class Statistics {
+    private final long[] links;
+    // null when not timed
+    private final long[] nanos;
+
+    public Statistics(LinkRewriter rewriter) {
+      this(rewriter, true);
+    }
+
+    /**
+     * @param timed
+     *          false to only count the links, timing a pattern reading the clock twice each time it is tried
+     */
+    public Statistics(LinkRewriter rewriter, boolean timed) {
+      links = new long[rewriter.patterns.length];
+      nanos = timed ? new long[rewriter.patterns.length] : null;
+    }
+
+    public long getLinks(int pattern) {
+      return links[pattern];
+    }
+
+    /**
+     * @return 0 when not timed
+     */
+    public long getNanos(int pattern) {
+      return nanos == null ? 0 : nanos[pattern];
+    }
+  }
+
+  /**
+   * Computes the new value of a link.
+   */
+  public interface LinkHandler {
+
+    /**
+     * @return the new value of the link, the link itself to leave it unchanged
+     */
+    String handle(String link) throws MojoExecutionException;
+  }
+}
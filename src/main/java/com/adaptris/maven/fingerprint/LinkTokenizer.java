@@ -0,0 +1,414 @@
+package com.adaptris.maven.fingerprint;
+
+import java.util.function.IntPredicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the url of a link starting at a position of the data, for the {@link LinkRewriter}.
+ * <p>
+ * The default patterns have hand written tokenizers giving the same urls as the regular expressions, without their
+ * backtracking: the lazy <code>.*?</code> spans of the default patterns look for the end of a link up to the end of
+ * the line, so on a long single line page each <code>&lt;link</code> or <code>&lt;img</code> without the expected
+ * attribute scans the rest of the page. The tokenizers look for the attributes, quotes and line ends through
+ * {@link Cursor cursors} remembering where the next one is, so that the data is scanned a bounded number of times
+ * whatever the number of tags. Other patterns go through their regular expression.
+ * </p>
+ * <p>
+ * A tokenizer is created for one data and must be called at increasing positions where the literal prefix of its
+ * pattern starts, from the end of its previous match, as the rewriter does.
+ * </p>
+ */
+public abstract class LinkTokenizer {
+
+  private static final String QUOTES = "\",'";
+  private static final String PATHS = "/.";
+
+  protected final CharSequence data;
+  protected int urlStart;
+  protected int urlEnd;
+  protected int matchEnd;
+
+  protected LinkTokenizer(CharSequence data) {
+    this.data = data;
+  }
+
+  /**
+   * @param builtIn
+   *          use the hand written tokenizer of a default pattern
+   * @return the tokenizer of the pattern
+   */
+  public static LinkTokenizer create(Pattern pattern, CharSequence data, boolean builtIn) {
+    if (builtIn && pattern.flags() == 0) {
+      String regex = pattern.pattern();
+      if (regex.equals(FingerprintMojo.LINK_PATTERN.pattern())) {
+        return new Attribute(data, "<link", "href=\"", false);
+      } else if (regex.equals(FingerprintMojo.JSTL_URL_PATTERN.pattern())) {
+        return new Attribute(data, "<c:url", "value=\"", true);
+      } else if (regex.equals(FingerprintMojo.IMG_PATTERN.pattern())) {
+        return new ImageSource(data);
+      } else if (regex.equals(FingerprintMojo.SCRIPT_PATTERN.pattern())) {
+        return new Script(data);
+      } else if (regex.equals(FingerprintMojo.CSS_IMG_PATTERN.pattern())) {
+        return new CssUrl(data);
+      } else if (regex.equals(FingerprintMojo.FROM_URL_PATTERN.pattern())) {
+        return new FromUrl(data);
+      }
+    }
+    return new Regex(pattern, data);
+  }
+
+  /**
+   * @return true if a link starts at the position, its url being then between {@link #urlStart()} and
+   *         {@link #urlEnd()}, the whole match ending at {@link #matchEnd()}
+   */
+  public abstract boolean lookingAt(int pos);
+
+  public int urlStart() {
+    return urlStart;
+  }
+
+  public int urlEnd() {
+    return urlEnd;
+  }
+
+  /**
+   * @return the end of the match, where the pattern may match again
+   */
+  public int matchEnd() {
+    return matchEnd;
+  }
+
+  protected boolean found(int start, int end, int matchEnd) {
+    urlStart = start;
+    urlEnd = end;
+    this.matchEnd = matchEnd;
+    return true;
+  }
+
+  protected boolean startsWith(int pos, String value) {
+    if (pos < 0 || pos + value.length() > data.length()) {
+      return false;
+    }
+    for (int i = 0; i < value.length(); i++) {
+      if (data.charAt(pos + i) != value.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  protected boolean isAt(int pos, char c) {
+    return pos < data.length() && data.charAt(pos) == c;
+  }
+
+  protected boolean isOneOf(int pos, String chars) {
+    return pos < data.length() && chars.indexOf(data.charAt(pos)) != -1;
+  }
+
+  /**
+   * @return a cursor on the ends of the lines, as a <code>.</code> of a regular expression doesn't match them
+   */
+  protected Cursor lineEnds() {
+    return new Cursor(data, null) {
+      @Override
+      protected int search(int start, int end) {
+        for (int i = start; i < end; i++) {
+          if (isLineTerminator(data.charAt(i))) {
+            return i;
+          }
+        }
+        return -1;
+      }
+    };
+  }
+
+  protected Cursor chars(char c) {
+    return new Cursor(data, c, null);
+  }
+
+  private static boolean isLineTerminator(char c) {
+    return c <= '\r' ? c == '\n' || c == '\r' : c == '\u0085' || c == '\u2028' || c == '\u2029';
+  }
+
+  /**
+   * \s of a regular expression.
+   */
+  private static boolean isWhitespace(char c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+  }
+
+  /**
+   * The next index satisfying a predicate, the last one found being kept so that asking again from a position before
+   * it doesn't scan anything.
+   * <p>
+   * When the character at the index is known, the predicate is only tested where it is found.
+   * </p>
+   */
+  static class Cursor {
+    private final CharSequence data;
+    private final int length;
+    private final boolean anyChar;
+    private final char first;
+    private final IntPredicate predicate;
+    // nothing satisfies the predicate from the index "from" to the index "found" excluded, -1 for the end
+    private int from;
+    private int found = -1;
+
+    Cursor(CharSequence data, IntPredicate predicate) {
+      this(data, true, (char) 0, predicate);
+    }
+
+    /**
+     * @param predicate
+     *          null if the character is enough
+     */
+    Cursor(CharSequence data, char first, IntPredicate predicate) {
+      this(data, false, first, predicate);
+    }
+
+    private Cursor(CharSequence data, boolean anyChar, char first, IntPredicate predicate) {
+      this.data = data;
+      this.anyChar = anyChar;
+      this.first = first;
+      this.predicate = predicate;
+      length = data.length();
+      from = length;
+    }
+
+    /**
+     * @return the first index at or after index satisfying the predicate, -1 if there is none
+     */
+    int next(int index) {
+      if (index >= from && (found == -1 || index <= found)) {
+        return found;
+      }
+      // before what is known, only the part up to it is scanned
+      int next = search(Math.max(index, 0), index < from ? from : length);
+      if (next != -1) {
+        found = next;
+      } else if (index >= from) {
+        found = -1;
+      }
+      from = index;
+      return found;
+    }
+
+    /**
+     * @return the first index satisfying the predicate between start and end excluded, -1 if there is none
+     */
+    protected int search(int start, int end) {
+      for (int i = start; i < end; i++) {
+        if ((anyChar || data.charAt(i) == first) && (predicate == null || predicate.test(i))) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    /**
+     * @return the first index at or after index satisfying the predicate, the length if there is none
+     */
+    int nextOrEnd(int index) {
+      int next = next(index);
+      return next == -1 ? length : next;
+    }
+  }
+
+  /**
+   * Any pattern, through its regular expression.
+   */
+  private static class Regex extends LinkTokenizer {
+    private static final int URL_GROUP = 2;
+    private final Matcher matcher;
+
+    Regex(Pattern pattern, CharSequence data) {
+      super(data);
+      matcher = pattern.matcher(data).useTransparentBounds(true).useAnchoringBounds(false);
+    }
+
+    @Override
+    public boolean lookingAt(int pos) {
+      matcher.region(pos, data.length());
+      return matcher.lookingAt() && matcher.start(URL_GROUP) != -1
+          && found(matcher.start(URL_GROUP), matcher.end(URL_GROUP), matcher.end());
+    }
+  }
+
+  /**
+   * <code>(&lt;tag.*?attribute=")(.*?)(".*?&gt;)</code>: the url is in the first attribute of the line following the
+   * tag, up to the next quote, with a &gt; after the quote on the same line. A later attribute of the line can't
+   * match when the first one doesn't: the quote ending its url comes before the quote of the later attribute.
+   * <p>
+   * With paths only, <code>(&lt;tag.*?attribute=")([/.].*?)(".*?&gt;)</code>, the url is in the first attribute
+   * whose value starts with / or a dot.
+   * </p>
+   */
+  private static class Attribute extends LinkTokenizer {
+    private final int tagLength;
+    private final int attributeLength;
+    private final Cursor attributes;
+    private final Cursor quotes;
+    private final Cursor closings;
+    private final Cursor lineEnds;
+
+    Attribute(CharSequence data, String tag, String attribute, boolean pathsOnly) {
+      super(data);
+      tagLength = tag.length();
+      attributeLength = attribute.length();
+      attributes = new Cursor(data, attribute.charAt(0), i -> startsWith(i, attribute)
+          && (!pathsOnly || isOneOf(i + attribute.length(), PATHS)));
+      quotes = chars('"');
+      closings = chars('>');
+      lineEnds = lineEnds();
+    }
+
+    @Override
+    public boolean lookingAt(int pos) {
+      int lineEnd = lineEnds.nextOrEnd(pos);
+      int attribute = attributes.next(pos + tagLength);
+      if (attribute == -1 || attribute >= lineEnd) {
+        return false;
+      }
+      int start = attribute + attributeLength;
+      int quote = quotes.next(start);
+      if (quote == -1 || quote >= lineEnd) {
+        return false;
+      }
+      int closing = closings.next(quote + 1);
+      return closing != -1 && closing < lineEnd && found(start, quote, closing + 1);
+    }
+  }
+
+  /**
+   * <code>(&lt;img.*?src=")([^\}\{]*?)(".*?&gt;)</code>: the url may span several lines, up to the first quote with a
+   * &gt; after it on its line, unless there is a brace before that quote. Then a later src attribute of the line of
+   * the tag may still match, its url starting after the brace.
+   */
+  private static class ImageSource extends LinkTokenizer {
+    private static final String TAG = "<img";
+    private static final String SOURCE = "src=\"";
+
+    private final Cursor sources;
+    private final Cursor urlEnds;
+    private final Cursor braces;
+    private final Cursor closings;
+    private final Cursor quoteLineEnds;
+    private final Cursor lineEnds;
+
+    ImageSource(CharSequence data) {
+      super(data);
+      closings = chars('>');
+      quoteLineEnds = lineEnds();
+      urlEnds = new Cursor(data, '"', i -> {
+        int closing = closings.next(i + 1);
+        return closing != -1 && closing < quoteLineEnds.nextOrEnd(i + 1);
+      });
+      braces = new Cursor(data, i -> data.charAt(i) == '{' || data.charAt(i) == '}');
+      sources = new Cursor(data, 's', i -> {
+        if (!startsWith(i, SOURCE)) {
+          return false;
+        }
+        int start = i + SOURCE.length();
+        int end = urlEnds.next(start);
+        if (end == -1) {
+          return false;
+        }
+        int brace = braces.next(start);
+        return brace == -1 || brace > end;
+      });
+      lineEnds = lineEnds();
+    }
+
+    @Override
+    public boolean lookingAt(int pos) {
+      int source = sources.next(pos + TAG.length());
+      if (source == -1 || source >= lineEnds.nextOrEnd(pos)) {
+        return false;
+      }
+      int start = source + SOURCE.length();
+      int end = urlEnds.next(start);
+      return found(start, end, closings.next(end + 1) + 1);
+    }
+  }
+
+  /**
+   * <code>(")([^\s"]*?\.js)(")</code>: the url is everything up to the next quote, if there is no whitespace before
+   * it and it ends with .js. The next quote is where the next link may start, so each character is read once.
+   */
+  private static class Script extends LinkTokenizer {
+
+    Script(CharSequence data) {
+      super(data);
+    }
+
+    @Override
+    public boolean lookingAt(int pos) {
+      int start = pos + 1;
+      int end = start;
+      int length = data.length();
+      while (end < length && data.charAt(end) != '"' && !isWhitespace(data.charAt(end))) {
+        end++;
+      }
+      return isAt(end, '"') && end - start >= 3 && startsWith(end - 3, ".js") && found(start, end, end + 1);
+    }
+  }
+
+  /**
+   * <code>(url\([",'])(.*?)([",']\))</code>: the url ends at the first quote or comma followed by a parenthesis of the
+   * line.
+   */
+  private static class CssUrl extends LinkTokenizer {
+    private static final int URL_OFFSET = "url(".length() + 1;
+
+    private final Cursor urlEnds;
+    private final Cursor lineEnds;
+
+    CssUrl(CharSequence data) {
+      super(data);
+      urlEnds = new Cursor(data, i -> isOneOf(i, QUOTES) && isAt(i + 1, ')'));
+      lineEnds = lineEnds();
+    }
+
+    @Override
+    public boolean lookingAt(int pos) {
+      if (!isOneOf(pos + URL_OFFSET - 1, QUOTES)) {
+        return false;
+      }
+      int start = pos + URL_OFFSET;
+      int end = urlEnds.next(start);
+      return end != -1 && end < lineEnds.nextOrEnd(start) && found(start, end, end + 2);
+    }
+  }
+
+  /**
+   * <code>(fromUrl:\s*[",'])(.*?)([",'])</code>: after any whitespace and a quote or comma, the url ends at the next
+   * quote or comma of the line.
+   */
+  private static class FromUrl extends LinkTokenizer {
+    private static final int PREFIX_LENGTH = "fromUrl:".length();
+
+    private final Cursor urlEnds;
+    private final Cursor lineEnds;
+
+    FromUrl(CharSequence data) {
+      super(data);
+      urlEnds = new Cursor(data, i -> QUOTES.indexOf(data.charAt(i)) != -1);
+      lineEnds = lineEnds();
+    }
+
+    @Override
+    public boolean lookingAt(int pos) {
+      int quote = pos + PREFIX_LENGTH;
+      while (quote < data.length() && isWhitespace(data.charAt(quote))) {
+        quote++;
+      }
+      if (!isOneOf(quote, QUOTES)) {
+        return false;
+      }
+      int start = quote + 1;
+      int end = urlEnds.next(start);
+      return end != -1 && end < lineEnds.nextOrEnd(start) && found(start, end, end + 1);
+    }
+  }
+}
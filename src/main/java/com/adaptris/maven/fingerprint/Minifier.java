@@ -0,0 +1,225 @@
+package com.adaptris.maven.fingerprint;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.mozilla.javascript.ErrorReporter;
+import org.mozilla.javascript.EvaluatorException;
+
+import com.yahoo.platform.yui.compressor.CssCompressor;
+import com.yahoo.platform.yui.compressor.JavaScriptCompressor;
+
+/**
+ * Minifies javascript and css files with the YUI compressor, html and jsp files are minified by a
+ * {@link HtmlMinifier} while their links are rewritten.
+ * <p>
+ * Minified contents are kept in a cache directory, named after the sha-256 digest of their source whatever the
+ * algorithm the resources are fingerprinted with, so that a file is only minified again when its content changes.
+ * Within a build, each content is minified once whatever the number of threads asking for it. With a shared
+ * fingerprint cache, contents minified by other builds are fetched from it and the ones minified here published to
+ * it.
+ * </p>
+ */
+public class Minifier {
+
+  public static final List<String> COMPRESSOR_EXTENSIONS = Arrays.asList("js", "css");
+  public static final List<String> HTML_EXTENSIONS = Arrays.asList("html", "htm", "xhtml", "jsp", "jspf", "tag");
+
+  private static final String MINIFIED_KEY = "minified/";
+
+  private final Set<String> extensions = new HashSet<>();
+  private final File cacheDirectory;
+  private final FailSafeFingerprintCache sharedCache;
+  private final CpuStage cpuStage;
+  private final Log log;
+  private final Map<String, FutureTask<String>> minified = new ConcurrentHashMap<>();
+
+  /**
+   * @param cacheDirectory
+   *          null to minify the files on each build
+   */
+  public Minifier(Collection<String> extensions, File cacheDirectory, Log log) throws MojoExecutionException {
+    this(extensions, cacheDirectory, null, CpuStage.UNBOUNDED, log);
+  }
+
+  /**
+   * @param sharedCache
+   *          null if none, only used with a cache directory
+   * @param cpuStage
+   *          entered by the threads compressing a file, reading and writing the cache being left out of it
+   */
+  Minifier(Collection<String> extensions, File cacheDirectory, FailSafeFingerprintCache sharedCache,
+      CpuStage cpuStage, Log log) throws MojoExecutionException {
+    for (String extension : extensions) {
+      String normalized = extension.trim().toLowerCase(Locale.ROOT);
+      if (!COMPRESSOR_EXTENSIONS.contains(normalized) && !HTML_EXTENSIONS.contains(normalized)) {
+        throw new MojoExecutionException("unsupported minify extension: " + extension);
+      }
+      this.extensions.add(normalized);
+    }
+    this.cacheDirectory = cacheDirectory;
+    this.sharedCache = cacheDirectory == null ? null : sharedCache;
+    this.cpuStage = cpuStage;
+    this.log = log;
+  }
+
+  /**
+   * @return true if the file is minified by the YUI compressor
+   */
+  public boolean accepts(File file) {
+    String extension = extension(file);
+    return COMPRESSOR_EXTENSIONS.contains(extension) && extensions.contains(extension);
+  }
+
+  /**
+   * @return true if the file is minified as html
+   */
+  public boolean acceptsHtml(File file) {
+    String extension = extension(file);
+    return HTML_EXTENSIONS.contains(extension) && extensions.contains(extension);
+  }
+
+  private static String extension(File file) {
+    String extension = Utils.getFileExtension(file.getName());
+    return extension == null ? "" : extension.toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * @return the minified content of the file
+   */
+  public String minify(File file) throws MojoExecutionException {
+    String extension = Utils.getFileExtension(file.getName()).toLowerCase(Locale.ROOT);
+    byte[] source;
+    try {
+      source = Files.readAllBytes(file.toPath());
+    } catch (IOException e) {
+      throw new MojoExecutionException("unable to read file: " + file.getAbsolutePath(), e);
+    }
+    String name = DigestUtils.sha256Hex(source) + "." + extension;
+    FutureTask<String> task = minified.get(name);
+    if (task == null) {
+      FutureTask<String> newTask = new FutureTask<>(() -> load(file, source, name, extension));
+      task = minified.putIfAbsent(name, newTask);
+      if (task == null) {
+        task = newTask;
+        task.run();
+      }
+    }
+    try {
+      return task.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof MojoExecutionException) {
+        throw (MojoExecutionException) e.getCause();
+      }
+      throw new MojoExecutionException("unable to minify: " + file.getAbsolutePath(), e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new MojoExecutionException("interrupted while minifying: " + file.getAbsolutePath(), e);
+    }
+  }
+
+  private String load(File file, byte[] source, String name, String extension) throws MojoExecutionException {
+    File cached = cacheDirectory == null ? null : new File(cacheDirectory, name);
+    if (cached != null && cached.isFile()) {
+      return Utils.readFile(cached);
+    }
+    String sharedKey = MINIFIED_KEY + name;
+    if (sharedCache != null && sharedCache.getContent(sharedKey, cached)) {
+      return Utils.readFile(cached);
+    }
+    String content = cpuStage.inside(() -> compress(file, source, extension));
+    if (cached != null) {
+      // written under a temporary name first so that a concurrent build never reads a partial file
+      File tmp = new File(cacheDirectory, name + "." + Thread.currentThread().getId() + ".tmp");
+      Utils.writeInFile(content, tmp);
+      if (!tmp.renameTo(cached) && !cached.isFile()) {
+        throw new MojoExecutionException("unable to write minified file: " + cached.getAbsolutePath());
+      }
+      tmp.delete();
+      if (sharedCache != null) {
+        sharedCache.putContent(sharedKey, cached);
+      }
+    }
+    return content;
+  }
+
+  private String compress(File file, byte[] source, String extension) throws MojoExecutionException {
+    if (log.isDebugEnabled()) {
+      log.debug("minifying file: " + file.getAbsolutePath());
+    }
+    StringWriter writer = new StringWriter((int) file.length());
+    try (Reader reader = new StringReader(new String(source, StandardCharsets.UTF_8))) {
+      if ("css".equals(extension)) {
+        new CssCompressor(reader).compress(writer, -1);
+      } else {
+        new JavaScriptCompressor(reader, new Reporter(file)).compress(writer, -1, true, false, false, false);
+      }
+    } catch (IOException | EvaluatorException e) {
+      throw new MojoExecutionException("unable to minify: " + file.getAbsolutePath(), e);
+    }
+    return writer.toString();
+  }
+
+  /**
+   * Removes the minified contents which haven't been used during this build, to be called once every file has been
+   * minified.
+   */
+  public void pruneCache() {
+    if (cacheDirectory == null) {
+      return;
+    }
+    File[] files = cacheDirectory.listFiles();
+    if (files == null) {
+      return;
+    }
+    for (File file : files) {
+      if (!minified.containsKey(file.getName()) && !file.delete()) {
+        log.warn("unable to delete unused minified file: " + file.getAbsolutePath());
+      }
+    }
+  }
+
+  private class Reporter implements ErrorReporter {
+    private final File file;
+
+    Reporter(File file) {
+      this.file = file;
+    }
+
+    @Override
+    public void warning(String message, String sourceName, int line, String lineSource, int lineOffset) {
+      if (log.isDebugEnabled()) {
+        log.debug(file.getAbsolutePath() + ":" + line + ":" + lineOffset + ": " + message);
+      }
+    }
+
+    @Override
+    public void error(String message, String sourceName, int line, String lineSource, int lineOffset) {
+      log.error(file.getAbsolutePath() + ":" + line + ":" + lineOffset + ": " + message);
+    }
+
+    @Override
+    public EvaluatorException runtimeError(String message, String sourceName, int line, String lineSource,
+        int lineOffset) {
+      return new EvaluatorException(file.getAbsolutePath() + ":" + line + ":" + lineOffset + ": " + message);
+    }
+  }
+}
@@ -0,0 +1,98 @@
+package com.adaptris.maven.fingerprint;
+
+import java.io.File;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.apache.maven.execution.MavenExecutionRequest;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * Digests shared by the executions of a maven session, so that the resources common to the modules of a reactor,
+ * e.g. the static assets of an overlay, are hashed once per build rather than once per module.
+ * <p>
+ * Entries are keyed on the canonical path of the file and on how its digest is computed, and checked against its
+ * size and last modified time so that a file changed during the build is hashed again. Each digest is computed once
+ * whatever the number of modules asking for it, including in a parallel build. The index is kept with the request of
+ * the session, shared by the copy of the session maven gives each module, and dropped with it.
+ * </p>
+ */
+public class ReactorIndex {
+
+  private static final Map<MavenExecutionRequest, ReactorIndex> INDEXES = new WeakHashMap<>();
+
+  private final Map<String, Entry> digests = new ConcurrentHashMap<>();
+
+  /**
+   * @return the index of the session
+   */
+  public static ReactorIndex get(MavenSession session) {
+    synchronized (INDEXES) {
+      return INDEXES.computeIfAbsent(session.getRequest(), r -> new ReactorIndex());
+    }
+  }
+
+  /**
+   * @param key
+   *          how the digest is computed and the canonical path of the file
+   * @param computation
+   *          computes the digest of the file if it isn't known yet, or has changed since it was computed
+   * @return the digest of the file
+   */
+  public String digest(String key, File file, Callable<String> computation) throws MojoExecutionException {
+    long length = file.length();
+    long lastModified = file.lastModified();
+    while (true) {
+      Entry entry = digests.get(key);
+      if (entry != null && entry.length == length && entry.lastModified == lastModified) {
+        return get(entry, key);
+      }
+      Entry newEntry = new Entry(length, lastModified, new FutureTask<>(computation));
+      if (entry == null ? digests.putIfAbsent(key, newEntry) == null : digests.replace(key, entry, newEntry)) {
+        newEntry.task.run();
+        try {
+          return get(newEntry, key);
+        } catch (MojoExecutionException e) {
+          // computed again by the next module asking for it
+          digests.remove(key, newEntry);
+          throw e;
+        }
+      }
+    }
+  }
+
+  int size() {
+    return digests.size();
+  }
+
+  private static String get(Entry entry, String key) throws MojoExecutionException {
+    try {
+      return entry.task.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof MojoExecutionException) {
+        throw (MojoExecutionException) e.getCause();
+      }
+      throw new MojoExecutionException("unable to fingerprint: " + key, e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new MojoExecutionException("interrupted while fingerprinting: " + key, e);
+    }
+  }
+
+  private static class Entry {
+    private final long length;
+    private final long lastModified;
+    private final FutureTask<String> task;
+
+    Entry(long length, long lastModified, FutureTask<String> task) {
+      this.length = length;
+      this.lastModified = lastModified;
+      this.task = task;
+    }
+  }
+}
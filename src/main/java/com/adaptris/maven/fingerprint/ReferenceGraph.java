@@ -0,0 +1,164 @@
+package com.adaptris.maven.fingerprint;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * References between the processed files, built from the links found by the patterns.
+ * <p>
+ * A processed file is fingerprinted from its rewritten content, so it must be processed after the processed files it
+ * references. The files are grouped in levels: the first level holds the files which don't reference any processed
+ * file, each next level the files which only reference files of the previous levels, so the files of a level can be
+ * processed in parallel. The files in a cycle, and the files referencing them, can't be ordered: they are grouped in a
+ * last level and are fingerprinted from their source.
+ * </p>
+ * <p>
+ * The references to the resources which are not processed are kept as well, so that the processed files depending on
+ * any resource can be found without scanning them again.
+ * </p>
+ */
+public class ReferenceGraph {
+
+  private final Map<String, File> files = new LinkedHashMap<>();
+  private final Map<String, Set<String>> references = new HashMap<>();
+  private final Map<String, Set<String>> referencedBy = new HashMap<>();
+  private final Set<String> unordered = new HashSet<>();
+
+  /**
+   * @param path
+   *          canonical path of the processed file
+   */
+  public synchronized void add(String path, File file) {
+    files.put(path, file);
+    references.putIfAbsent(path, new HashSet<>());
+  }
+
+  public synchronized boolean contains(String path) {
+    return files.containsKey(path);
+  }
+
+  /**
+   * @return the processed file added with the canonical path, null if there is none
+   */
+  public synchronized File getFile(String path) {
+    return files.get(path);
+  }
+
+  /**
+   * @param referencedPaths
+   *          canonical paths of the resources referenced by the processed file
+   */
+  public synchronized void addReferences(String path, Collection<String> referencedPaths) {
+    Set<String> referenced = references.computeIfAbsent(path, p -> new HashSet<>());
+    for (String referencedPath : referencedPaths) {
+      referenced.add(referencedPath);
+      referencedBy.computeIfAbsent(referencedPath, p -> new HashSet<>()).add(path);
+    }
+  }
+
+  /**
+   * Replaces the references of a processed file which has changed.
+   */
+  public synchronized void setReferences(String path, Collection<String> referencedPaths) {
+    Set<String> previous = references.remove(path);
+    if (previous != null) {
+      for (String referencedPath : previous) {
+        Set<String> referencing = referencedBy.get(referencedPath);
+        referencing.remove(path);
+        if (referencing.isEmpty()) {
+          referencedBy.remove(referencedPath);
+        }
+      }
+    }
+    addReferences(path, referencedPaths);
+  }
+
+  /**
+   * @return the canonical paths of the processed files referencing one of the resources, directly or through other
+   *         processed files
+   */
+  public synchronized Set<String> getReferencing(Collection<String> paths) {
+    Set<String> referencing = new LinkedHashSet<>();
+    Deque<String> pending = new ArrayDeque<>(paths);
+    while (!pending.isEmpty()) {
+      for (String path : referencedBy.getOrDefault(pending.poll(), Collections.emptySet())) {
+        if (files.containsKey(path) && referencing.add(path)) {
+          pending.add(path);
+        }
+      }
+    }
+    return referencing;
+  }
+
+  /**
+   * @return the files to process level after level, in the order they have been added within a level
+   */
+  public synchronized List<List<File>> levels() {
+    List<List<File>> levels = new ArrayList<>();
+    Set<String> ordered = new HashSet<>();
+    List<String> remaining = new ArrayList<>(files.keySet());
+    unordered.clear();
+    while (!remaining.isEmpty()) {
+      List<String> level = new ArrayList<>();
+      List<String> next = new ArrayList<>();
+      for (String path : remaining) {
+        if (isReady(path, ordered)) {
+          level.add(path);
+        } else {
+          next.add(path);
+        }
+      }
+      if (level.isEmpty()) {
+        break;
+      }
+      // added once the level is complete so that the files of a level never depend on each other
+      ordered.addAll(level);
+      levels.add(toFiles(level));
+      remaining = next;
+    }
+    if (!remaining.isEmpty()) {
+      unordered.addAll(remaining);
+      levels.add(toFiles(remaining));
+    }
+    return levels;
+  }
+
+  private boolean isReady(String path, Set<String> ordered) {
+    for (String referencedPath : references.get(path)) {
+      if (files.containsKey(referencedPath) && !ordered.contains(referencedPath)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return the canonical paths of the files which can't be ordered, known once {@link #levels()} has been called
+   */
+  public synchronized Set<String> getUnordered() {
+    return Collections.unmodifiableSet(new HashSet<>(unordered));
+  }
+
+  public synchronized boolean isOrdered(String path) {
+    return files.containsKey(path) && !unordered.contains(path);
+  }
+
+  private List<File> toFiles(List<String> paths) {
+    List<File> result = new ArrayList<>(paths.size());
+    for (String path : paths) {
+      result.add(files.get(path));
+    }
+    return result;
+  }
+}
@@ -0,0 +1,221 @@
+package com.adaptris.maven.fingerprint;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Encodes the appended chars in UTF-8 straight to a file through small buffers, so that the content written never
+ * exists as a whole in memory.
+ * <p>
+ * When unchanged files are skipped, the encoded content is compared with the existing file as it is appended and the
+ * file is only written from the first difference: a file which gets the same content is left untouched, last
+ * modified time included.
+ * </p>
+ * <p>
+ * The content is complete once {@link #finish()} has returned. A writer closed before, e.g. because producing the
+ * content has failed, deletes the file if it has started writing it, so that a file half old and half new is never
+ * left behind to be taken for an up to date target.
+ * </p>
+ */
+public class TargetWriter implements Appendable, Closeable {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final Path path;
+  private final FileChannel channel;
+  private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+      .onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+  private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+  private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+  private ByteBuffer existing;
+  // number of bytes compared or written
+  private long position;
+  private long written;
+  private long ioNanos;
+  private boolean comparing;
+  private boolean finished;
+
+  /**
+   * @param skipUnchanged
+   *          compare with the existing content instead of writing it again
+   */
+  public TargetWriter(File file, boolean skipUnchanged) throws IOException {
+    File parent = file.getAbsoluteFile().getParentFile();
+    if (!parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory()) {
+      throw new IOException("unable to create directory: " + parent.getAbsolutePath());
+    }
+    path = file.toPath();
+    comparing = skipUnchanged && file.isFile();
+    if (comparing) {
+      channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      existing = ByteBuffer.allocate(BUFFER_SIZE);
+    } else {
+      channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+          StandardOpenOption.TRUNCATE_EXISTING);
+    }
+  }
+
+  /**
+   * @return true if the file has been written, known once finished
+   */
+  public boolean isWritten() {
+    return !comparing;
+  }
+
+  /**
+   * @return the number of bytes written, not counting the ones found unchanged
+   */
+  public long getBytesWritten() {
+    return written;
+  }
+
+  /**
+   * @return the time spent reading and writing the file, in nanoseconds
+   */
+  public long getIoNanos() {
+    return ioNanos;
+  }
+
+  @Override
+  public TargetWriter append(CharSequence csq) throws IOException {
+    CharSequence value = csq == null ? "null" : csq;
+    return append(value, 0, value.length());
+  }
+
+  @Override
+  public TargetWriter append(CharSequence csq, int start, int end) throws IOException {
+    CharSequence value = csq == null ? "null" : csq;
+    int index = start;
+    while (index < end) {
+      if (!chars.hasRemaining()) {
+        encode(false);
+      }
+      int count = Math.min(chars.remaining(), end - index);
+      int offset = chars.position();
+      if (value instanceof String) {
+        ((String) value).getChars(index, index + count, chars.array(), offset);
+      } else if (value instanceof StringBuilder) {
+        ((StringBuilder) value).getChars(index, index + count, chars.array(), offset);
+      } else if (value instanceof CharBuffer && ((CharBuffer) value).hasArray()) {
+        CharBuffer buffer = (CharBuffer) value;
+        System.arraycopy(buffer.array(), buffer.arrayOffset() + buffer.position() + index, chars.array(), offset,
+            count);
+      } else {
+        char[] array = chars.array();
+        for (int i = 0; i < count; i++) {
+          array[offset + i] = value.charAt(index + i);
+        }
+      }
+      chars.position(offset + count);
+      index += count;
+    }
+    return this;
+  }
+
+  @Override
+  public TargetWriter append(char c) throws IOException {
+    if (!chars.hasRemaining()) {
+      encode(false);
+    }
+    chars.put(c);
+    return this;
+  }
+
+  /**
+   * Encodes the pending chars, but the high surrogate of a pair which isn't complete yet.
+   */
+  private void encode(boolean endOfInput) throws IOException {
+    chars.flip();
+    while (true) {
+      CoderResult result = encoder.encode(chars, bytes, endOfInput);
+      if (result.isUnderflow()) {
+        break;
+      }
+      if (!result.isOverflow()) {
+        result.throwException();
+      }
+      drain();
+    }
+    chars.compact();
+  }
+
+  private void drain() throws IOException {
+    long start = System.nanoTime();
+    bytes.flip();
+    if (comparing) {
+      compare();
+    }
+    while (bytes.hasRemaining()) {
+      int count = channel.write(bytes, position);
+      position += count;
+      written += count;
+    }
+    bytes.clear();
+    ioNanos += System.nanoTime() - start;
+  }
+
+  /**
+   * Skips the bytes already in the file, switching to writing at the first difference.
+   */
+  private void compare() throws IOException {
+    existing.clear();
+    existing.limit(bytes.remaining());
+    while (existing.hasRemaining() && channel.read(existing, position + existing.position()) != -1) {
+      // read as many bytes as encoded
+    }
+    existing.flip();
+    while (bytes.hasRemaining() && existing.hasRemaining() && bytes.get(bytes.position()) == existing.get()) {
+      bytes.get();
+      position++;
+    }
+    if (bytes.hasRemaining()) {
+      comparing = false;
+    }
+  }
+
+  /**
+   * Writes what is left of the content and closes the file.
+   */
+  public void finish() throws IOException {
+    if (!channel.isOpen()) {
+      return;
+    }
+    try {
+      encode(true);
+      while (encoder.flush(bytes).isOverflow()) {
+        drain();
+      }
+      drain();
+      if (channel.size() > position) {
+        // the existing content was longer
+        comparing = false;
+        channel.truncate(position);
+      }
+      finished = true;
+    } finally {
+      close();
+    }
+  }
+
+  /**
+   * Closes the file, deleting it if it has been partially written without being finished.
+   */
+  @Override
+  public void close() throws IOException {
+    channel.close();
+    if (!finished && !comparing) {
+      Files.deleteIfExists(path);
+    }
+  }
+}
@@ -1,11 +1,32 @@
 package com.adaptris.maven.fingerprint;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
 
-import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.logging.Log;
@@ -14,24 +35,81 @@ import org.codehaus.plexus.util.DirectoryScanner;
 public class Utils {
 
   private static final String UTF_8 = "UTF-8";
-  private static final String LINUX_EOL = "\n";
-  private static final String EOL_PATTERN = "\\r\\n?";
+  private static final int BUFFER_SIZE = 64 * 1024;
+  // files from this size are mapped in memory rather than read
+  private static final long MAP_THRESHOLD = 1024 * 1024;
+  private static final byte CR = '\r';
+  private static final byte LF = '\n';
+
+  /**
+   * Extensions of the files whose line endings are normalised before being fingerprinted, any other file is
+   * fingerprinted as is.
+   */
+  public static final Set<String> TEXT_EXTENSIONS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList("html",
+      "htm", "xhtml", "jsp", "jspf", "jspx", "tag", "tagx", "tld", "css", "less", "scss", "js", "mjs", "json", "map",
+      "xml", "xsl", "svg", "txt", "csv", "md", "properties", "tmpl", "vm", "ftl", "mustache", "hbs")));
 
   public static String generateMd5Fingerprint(File file) throws MojoExecutionException {
     if (file == null) {
       throw new MojoExecutionException("file should not be null to generate the Md5 Fingerprint");
     }
-    String fingerprint;
-    try {
-      String fileContent = FileUtils.readFileToString(file, UTF_8);
-      // Always linux format
-      fileContent = fileContent.replaceAll(EOL_PATTERN, LINUX_EOL);
-      fingerprint = DigestUtils.md5Hex(fileContent);
+    return generateFingerprint(file, HashAlgorithm.MD5);
+  }
+
+  public static String generateFingerprint(File file, HashAlgorithm algorithm) throws MojoExecutionException {
+    if (file == null) {
+      throw new MojoExecutionException("file should not be null to generate the " + algorithm + " Fingerprint");
+    }
+    try (InputStream is = new FileInputStream(file)) {
+      HashAlgorithm.Hasher hasher = algorithm.newHasher();
+      // Always linux format for text files
+      update(hasher, is, isTextFile(file));
+      return hasher.hex();
     } catch (Exception expt) {
-      throw new MojoExecutionException(
-          "unable to calculate md5 for file: " + file.getAbsolutePath(), expt);
+      throw new MojoExecutionException("unable to calculate " + algorithm.name().toLowerCase(Locale.ROOT)
+          + " for file: " + file.getAbsolutePath(), expt);
+    }
+  }
+
+  /**
+   * @return the fingerprint of content which has been computed, without normalising its line endings
+   */
+  public static String generateFingerprint(byte[] content, HashAlgorithm algorithm) {
+    HashAlgorithm.Hasher hasher = algorithm.newHasher();
+    hasher.update(content, 0, content.length);
+    return hasher.hex();
+  }
+
+  static boolean isTextFile(File file) {
+    String extension = getFileExtension(file.getName());
+    return extension != null && TEXT_EXTENSIONS.contains(extension.toLowerCase(Locale.ROOT));
+  }
+
+  /**
+   * Replaces CR and CRLF by LF while digesting when normalizeEol is set. Works on the raw bytes as CR and LF never
+   * appear inside a multi-byte UTF-8 sequence.
+   */
+  private static void update(HashAlgorithm.Hasher hasher, InputStream is, boolean normalizeEol) throws IOException {
+    byte[] buffer = new byte[BUFFER_SIZE];
+    boolean previousCr = false;
+    int read;
+    while ((read = is.read(buffer)) != -1) {
+      if (!normalizeEol) {
+        hasher.update(buffer, 0, read);
+        continue;
+      }
+      int length = 0;
+      for (int i = 0; i < read; i++) {
+        byte cur = buffer[i];
+        if (cur == LF && previousCr) {
+          previousCr = false;
+          continue;
+        }
+        previousCr = cur == CR;
+        buffer[length++] = previousCr ? LF : cur;
+      }
+      hasher.update(buffer, 0, length);
     }
-    return fingerprint;
   }
 
   public static String readFile(File file) throws MojoExecutionException {
@@ -45,17 +123,230 @@ public class Utils {
     }
   }
 
-  public static void writeInFile(String content, File file) throws MojoExecutionException {
+  /**
+   * Decodes the file in a single buffer, without the copy a String would need. Large files are mapped in memory
+   * instead of being read in the heap.
+   *
+   * @return the content of the file
+   */
+  public static CharBuffer readChars(File file) throws MojoExecutionException {
     if (file == null) {
-      throw new MojoExecutionException("file should not be null to be able to write in it");
+      throw new MojoExecutionException("file should not be null to be able to read it");
+    }
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new MojoExecutionException("file too large to be read: " + file.getAbsolutePath());
+      }
+      ByteBuffer bytes;
+      if (size >= MAP_THRESHOLD) {
+        bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      } else {
+        bytes = ByteBuffer.allocate((int) size);
+        while (bytes.hasRemaining() && channel.read(bytes) != -1) {
+          // read until the end of the file
+        }
+        bytes.flip();
+      }
+      // malformed input is replaced as when decoding a String
+      return StandardCharsets.UTF_8.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+          .onUnmappableCharacter(CodingErrorAction.REPLACE).decode(bytes);
+    } catch (IOException e) {
+      throw new MojoExecutionException("unable to read file: " + file.getAbsolutePath(), e);
+    }
+  }
+
+  /**
+   * Decodes the file as it is read, through buffers of a fixed size, decoding as {@link #readChars(File)} does.
+   *
+   * @return a reader of the content of the file, to be closed by the caller
+   */
+  public static Reader newReader(File file) throws MojoExecutionException {
+    if (file == null) {
+      throw new MojoExecutionException("file should not be null to be able to read it");
     }
     try {
-      FileUtils.writeStringToFile(file, content, UTF_8);
+      return Channels.newReader(FileChannel.open(file.toPath(), StandardOpenOption.READ), StandardCharsets.UTF_8
+          .newDecoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE),
+          BUFFER_SIZE);
+    } catch (IOException e) {
+      throw new MojoExecutionException("unable to read file: " + file.getAbsolutePath(), e);
+    }
+  }
+
+  public static void writeInFile(CharSequence content, File file) throws MojoExecutionException {
+    writeInFile(content, file, false);
+  }
+
+  /**
+   * Encodes the content chunk by chunk straight to the file, without building the whole encoded content.
+   *
+   * @param skipUnchanged
+   *          leave the file untouched, last modified time included, when it already has the same content
+   * @return true if the file has been written
+   */
+  public static boolean writeInFile(CharSequence content, File file, boolean skipUnchanged)
+      throws MojoExecutionException {
+    if (file == null) {
+      throw new MojoExecutionException("file should not be null to be able to write in it");
+    }
+    CharSequence chars = content == null ? "" : content;
+    // the content is only compared when it has the length of the file
+    try (TargetWriter writer = new TargetWriter(file, skipUnchanged && file.length() == utf8Length(chars))) {
+      writer.append(chars);
+      writer.finish();
+      return writer.isWritten();
     } catch (IOException e) {
       throw new MojoExecutionException("unable to write in file: " + file.getAbsolutePath(), e);
     }
   }
 
+  /**
+   * @return the number of bytes of the content encoded in UTF-8, a lone surrogate being replaced by a single byte
+   */
+  static long utf8Length(CharSequence content) {
+    long length = 0;
+    int count = content.length();
+    for (int i = 0; i < count; i++) {
+      char c = content.charAt(i);
+      if (c < 0x80) {
+        length++;
+      } else if (c < 0x800) {
+        length += 2;
+      } else if (Character.isHighSurrogate(c) && i + 1 < count && Character.isLowSurrogate(content.charAt(i + 1))) {
+        length += 4;
+        i++;
+      } else if (Character.isSurrogate(c)) {
+        length++;
+      } else {
+        length += 3;
+      }
+    }
+    return length;
+  }
+
+  /**
+   * Writes the value as a quoted json string.
+   */
+  static void writeJsonString(Writer writer, String value) throws IOException {
+    writer.write('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        writer.write('\\');
+        writer.write(c);
+      } else if (c < 0x20) {
+        writer.write(String.format("\\u%04x", (int) c));
+      } else {
+        writer.write(c);
+      }
+    }
+    writer.write('"');
+  }
+
+  /**
+   * Writes a gzip compressed copy of the source, with the best compression as it is done once at build time, unless
+   * the target already has the last modified time of the source which it is given once written.
+   *
+   * @return true if the target has been written
+   */
+  public static boolean gzip(File source, File target) throws MojoExecutionException {
+    if (source == null || target == null) {
+      throw new MojoExecutionException("source and target files should not be null to be able to compress");
+    }
+    long lastModified = source.lastModified();
+    if (target.isFile() && target.lastModified() == lastModified) {
+      return false;
+    }
+    try (InputStream is = new FileInputStream(source);
+        OutputStream os = new BestCompressionGzipOutputStream(Files.newOutputStream(target.toPath()))) {
+      byte[] buffer = new byte[BUFFER_SIZE];
+      int read;
+      while ((read = is.read(buffer)) != -1) {
+        os.write(buffer, 0, read);
+      }
+    } catch (IOException e) {
+      throw new MojoExecutionException("unable to compress: " + source.getAbsolutePath(), e);
+    }
+    if (!target.setLastModified(lastModified)) {
+      throw new MojoExecutionException("unable to set last modified time of: " + target.getAbsolutePath());
+    }
+    return true;
+  }
+
+  private static class BestCompressionGzipOutputStream extends GZIPOutputStream {
+    BestCompressionGzipOutputStream(OutputStream os) throws IOException {
+      super(os, BUFFER_SIZE);
+      def.setLevel(Deflater.BEST_COMPRESSION);
+    }
+  }
+
+  /**
+   * Copies or links the source file to the target file, unless the target is already up to date: same size and last
+   * modified time for a copy, same file for a link.
+   *
+   * @return true if the target has been written
+   */
+  public static boolean copyFile(File source, File target, CopyMode mode) throws MojoExecutionException {
+    if (source == null || target == null) {
+      throw new MojoExecutionException("source and target files should not be null to be able to copy");
+    }
+    Path sourcePath = source.toPath().toAbsolutePath();
+    Path targetPath = target.toPath();
+    try {
+      switch (mode) {
+      case HARDLINK:
+        if (Files.exists(targetPath) && Files.isSameFile(sourcePath, targetPath)) {
+          return false;
+        }
+        Files.deleteIfExists(targetPath);
+        try {
+          Files.createLink(targetPath, sourcePath);
+          return true;
+        } catch (IOException | UnsupportedOperationException e) {
+          // different file systems or not supported
+          return copyFile(source, target, CopyMode.COPY);
+        }
+      case SYMLINK:
+        if (Files.isSymbolicLink(targetPath) && Files.readSymbolicLink(targetPath).equals(sourcePath)) {
+          return false;
+        }
+        Files.deleteIfExists(targetPath);
+        Files.createSymbolicLink(targetPath, sourcePath);
+        return true;
+      default:
+        if (!Files.isSymbolicLink(targetPath) && target.length() == source.length()
+            && target.lastModified() == source.lastModified() && !Files.isSameFile(sourcePath, targetPath)) {
+          return false;
+        }
+        if (Files.isSymbolicLink(targetPath) || Files.exists(targetPath) && Files.isSameFile(sourcePath, targetPath)) {
+          // never write through a link to the source
+          Files.delete(targetPath);
+        }
+        Files.copy(sourcePath, targetPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+        return true;
+      }
+    } catch (IOException | UnsupportedOperationException e) {
+      throw new MojoExecutionException("unable to copy " + source.getAbsolutePath() + " to "
+          + target.getAbsolutePath(), e);
+    }
+  }
+
+  /**
+   * Removes the target if it is a link to the source so that writing in it doesn't change the source.
+   */
+  public static void unlink(File source, File target) throws MojoExecutionException {
+    Path targetPath = target.toPath();
+    try {
+      if (Files.isSymbolicLink(targetPath)
+          || Files.exists(targetPath) && Files.isSameFile(source.toPath(), targetPath)) {
+        Files.delete(targetPath);
+      }
+    } catch (IOException e) {
+      throw new MojoExecutionException("unable to remove link: " + target.getAbsolutePath(), e);
+    }
+  }
+
   public static void mkDirs(File srcDirectory, File destDirectory, Log log)
       throws MojoExecutionException {
     if (srcDirectory == null || destDirectory == null) {
@@ -0,0 +1,139 @@
+package com.adaptris.maven.fingerprint;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+/**
+ * Fingerprints the source directory like the <code>generate</code> goal, then keeps watching it until the build is
+ * interrupted.
+ * <p>
+ * Changes are collected until none has happened for <code>watchDebounce</code> milliseconds, so that saving several
+ * files at once gives a single batch. A changed resource is fingerprinted again and only the processed files
+ * referencing it, directly or through other processed files, are processed again. A batch which fails, e.g. on a
+ * file partially saved, is logged and the whole source directory is processed again on the next change.
+ * </p>
+ */
+@Mojo(name = "watch", threadSafe = true)
+public class WatchMojo extends FingerprintMojo {
+
+  /**
+   * milliseconds without any change before the changed files are processed
+   */
+  @Parameter(defaultValue = "100", property = "watchDebounce")
+  private long watchDebounce = 100;
+
+  // for the tests, to know when the changes are watched
+  final CountDownLatch watching = new CountDownLatch(1);
+
+  @Override
+  public void execute() throws MojoExecutionException {
+    super.execute();
+    Path source = getSourceDirectory().toPath();
+    try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+      Map<WatchKey, Path> directories = new HashMap<>();
+      register(watchService, source, directories, null);
+      getLog().info("watching for changes: " + getSourceDirectory().getAbsolutePath());
+      watching.countDown();
+      while (true) {
+        Set<File> changed = new LinkedHashSet<>();
+        boolean overflow = false;
+        WatchKey key = watchService.take();
+        while (key != null) {
+          Path directory = directories.get(key);
+          for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW || directory == null) {
+              overflow = true;
+              continue;
+            }
+            Path path = directory.resolve((Path) event.context());
+            if (event.kind() == ENTRY_CREATE && Files.isDirectory(path)) {
+              // the files created before the directory is watched are part of the batch
+              register(watchService, path, directories, changed);
+            } else if (!Files.isDirectory(path)) {
+              changed.add(path.toFile());
+            }
+          }
+          if (!key.reset()) {
+            directories.remove(key);
+          }
+          key = watchService.poll(watchDebounce, TimeUnit.MILLISECONDS);
+        }
+        long start = System.currentTimeMillis();
+        try {
+          if (overflow) {
+            getLog().info("too many changes, processing the whole source directory");
+            rebuild();
+          } else if (!changed.isEmpty()) {
+            int updated = update(changed);
+            getLog().info(changed.size() + " change(s), " + updated + " file(s) updated in "
+                + (System.currentTimeMillis() - start) + " ms");
+          }
+        } catch (MojoExecutionException e) {
+          if (Thread.currentThread().isInterrupted()) {
+            // stopped while processing the changes
+            throw new InterruptedException();
+          }
+          invalidate();
+          getLog().error(e.getMessage() + ", waiting for the next change");
+          if (getLog().isDebugEnabled()) {
+            getLog().debug(e);
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      getLog().info("stopped watching: " + getSourceDirectory().getAbsolutePath());
+    } catch (IOException e) {
+      throw new MojoExecutionException("unable to watch: " + getSourceDirectory().getAbsolutePath(), e);
+    }
+  }
+
+  /**
+   * Watches the directory and its sub directories.
+   *
+   * @param files
+   *          receives the files found in the directories, null to ignore them
+   */
+  private static void register(WatchService watchService, Path directory, Map<WatchKey, Path> directories,
+      Set<File> files) throws IOException {
+    Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+        directories.put(dir.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), dir);
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+        if (files != null) {
+          files.add(file.toFile());
+        }
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+}
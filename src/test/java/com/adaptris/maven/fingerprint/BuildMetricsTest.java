@@ -0,0 +1,93 @@
+package com.adaptris.maven.fingerprint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+public class BuildMetricsTest {
+
+  @Test
+  public void testCounters() throws Exception {
+    BuildMetrics metrics = new BuildMetrics(0);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    for (int i = 0; i < 1000; i++) {
+      executor.submit(() -> {
+        metrics.increment(BuildMetrics.Counter.LINKS_REWRITTEN);
+        metrics.add(BuildMetrics.Counter.BYTES_READ, 10);
+        metrics.addNanos(BuildMetrics.Phase.HASH, 5);
+      });
+    }
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    assertEquals(1000, metrics.get(BuildMetrics.Counter.LINKS_REWRITTEN));
+    assertEquals(10000, metrics.get(BuildMetrics.Counter.BYTES_READ));
+    assertEquals(5000, metrics.getNanos(BuildMetrics.Phase.HASH));
+    assertEquals(0, metrics.get(BuildMetrics.Counter.LINKS_MISSING));
+  }
+
+  @Test
+  public void testSlowest() {
+    BuildMetrics metrics = new BuildMetrics(3);
+    long[] nanos = { 5, 1, 9, 3, 7, 2 };
+    for (int i = 0; i < nanos.length; i++) {
+      metrics.fileProcessed("file" + i, nanos[i]);
+    }
+    List<BuildMetrics.FileTime> slowest = metrics.getSlowest();
+    assertEquals(3, slowest.size());
+    assertEquals("file2", slowest.get(0).getPath());
+    assertEquals("file4", slowest.get(1).getPath());
+    assertEquals("file0", slowest.get(2).getPath());
+
+    BuildMetrics none = new BuildMetrics(0);
+    none.fileProcessed("file", 1);
+    assertTrue(none.getSlowest().isEmpty());
+  }
+
+  @Test
+  public void testWrite() throws Exception {
+    BuildMetrics metrics = new BuildMetrics(1);
+    metrics.addPattern("(url\\(\")(.*?)(\"\\))", 0, 0);
+    metrics.addPattern("(src=\")(.*?)(\")", 2, 1500000);
+    metrics.addPattern("(url\\(\")(.*?)(\"\\))", 3, 0);
+    metrics.addNanos(BuildMetrics.Phase.REWRITE, 2500000);
+    metrics.increment(BuildMetrics.Counter.FILES_PROCESSED);
+    metrics.fileProcessed("css/style.css", 2000000);
+    metrics.stop();
+    File file = new File(new File(getClass().getResource("/utils/utilsTestFile.txt").toURI()).getParentFile(),
+        "metrics/fingerprint-metrics.json");
+    FileUtils.deleteQuietly(file.getParentFile());
+    metrics.write(file);
+
+    String json = FileUtils.readFileToString(file, StandardCharsets.UTF_8);
+    assertTrue(json.contains("\"rewrite\": 2.500,"));
+    assertTrue(json.contains("\"filesProcessed\": 1,"));
+    // in the order they have been added first
+    assertTrue(json.contains("\"patterns\": [\n"
+        + "    {\"pattern\": \"(url\\\\(\\\")(.*?)(\\\"\\\\))\", \"links\": 3, \"millis\": 0.000},\n"
+        + "    {\"pattern\": \"(src=\\\")(.*?)(\\\")\", \"links\": 2, \"millis\": 1.500}\n  ]"));
+    assertTrue(json.endsWith("\"slowestFiles\": [\n    {\"path\": \"css/style.css\", \"millis\": 2.000}\n  ]\n}\n"));
+  }
+
+  @Test
+  public void testWritePatternsNotTimed() throws Exception {
+    BuildMetrics metrics = new BuildMetrics(0, false);
+    metrics.addPattern("(src=\")(.*?)(\")", 2, 0);
+    metrics.stop();
+    File file = new File(new File(getClass().getResource("/utils/utilsTestFile.txt").toURI()).getParentFile(),
+        "metrics/not-timed.json");
+    FileUtils.deleteQuietly(file);
+    metrics.write(file);
+
+    String json = FileUtils.readFileToString(file, StandardCharsets.UTF_8);
+    assertTrue(json.contains("\"patterns\": [\n    {\"pattern\": \"(src=\\\")(.*?)(\\\")\", \"links\": 2}\n  ]"));
+  }
+}
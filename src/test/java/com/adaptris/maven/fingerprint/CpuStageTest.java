@@ -0,0 +1,120 @@
+package com.adaptris.maven.fingerprint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Test;
+
+public class CpuStageTest {
+
+  private final ExecutorService executor = Executors.newSingleThreadExecutor();
+  private final CpuStage stage = new CpuStage(1);
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * @return true once another thread has entered and left the stage, fails if it can't
+   */
+  private boolean enteredByAnother() throws IOException {
+    try {
+      return executor.submit(() -> stage.inside(() -> true)).get(10, TimeUnit.SECONDS);
+    } catch (Exception e) {
+      throw new IOException("unable to enter the stage from another thread", e);
+    }
+  }
+
+  @Test
+  public void testOutside() throws Exception {
+    stage.enter();
+    try {
+      assertTrue(stage.outside(this::enteredByAnother));
+      try {
+        stage.outside(() -> {
+          throw new IOException("unable to read");
+        });
+        fail();
+      } catch (IOException expected) {
+        assertEquals("unable to read", expected.getMessage());
+      }
+    } finally {
+      stage.exit();
+    }
+    assertTrue(enteredByAnother());
+  }
+
+  @Test
+  public void testReader() throws Exception {
+    Reader source = new StringReader("content") {
+      @Override
+      public int read(char[] cbuf, int off, int len) throws IOException {
+        assertTrue(enteredByAnother());
+        return super.read(cbuf, off, len);
+      }
+    };
+    stage.enter();
+    try (Reader reader = stage.reader(source)) {
+      assertEquals("content", IOUtils.toString(reader));
+    } finally {
+      stage.exit();
+    }
+  }
+
+  @Test
+  public void testOutput() throws Exception {
+    StringBuilder written = new StringBuilder();
+    Appendable target = new Appendable() {
+      @Override
+      public Appendable append(CharSequence csq) throws IOException {
+        assertTrue(enteredByAnother());
+        written.append(csq);
+        return this;
+      }
+
+      @Override
+      public Appendable append(CharSequence csq, int start, int end) throws IOException {
+        return append(csq.subSequence(start, end));
+      }
+
+      @Override
+      public Appendable append(char c) throws IOException {
+        return append(String.valueOf(c));
+      }
+    };
+    CpuStage.Output output = stage.output(target);
+    StringBuilder content = new StringBuilder();
+    stage.enter();
+    try {
+      while (content.length() < 200000) {
+        output.append("abcdefghij", 0, 10).append('k');
+        content.append("abcdefghijk");
+      }
+      // written by chunks
+      assertTrue(written.length() > 0);
+    } finally {
+      stage.exit();
+    }
+    output.flush();
+    assertEquals(content.toString(), written.toString());
+  }
+
+  @Test
+  public void testUnbounded() throws Exception {
+    StringBuilder written = new StringBuilder();
+    CpuStage.UNBOUNDED.output(written).append("a");
+    assertEquals("a", written.toString());
+    assertEquals("b", CpuStage.UNBOUNDED.outside(() -> "b"));
+  }
+}
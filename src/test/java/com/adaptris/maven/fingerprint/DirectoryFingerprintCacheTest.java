@@ -0,0 +1,96 @@
+package com.adaptris.maven.fingerprint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class DirectoryFingerprintCacheTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  private File directory;
+
+  @Before
+  public void setUp() throws Exception {
+    directory = new File(new File(getClass().getResource("/utils/utilsTestFile.txt").toURI()).getParentFile(),
+        "fingerprint-cache");
+    FileUtils.deleteDirectory(directory);
+  }
+
+  @Test
+  public void testDigests() throws Exception {
+    DirectoryFingerprintCache cache = new DirectoryFingerprintCache(new File(directory, "shared"));
+    assertNull(cache.getDigest("md5/0a1b2c3d-10"));
+    cache.putDigest("md5/0a1b2c3d-10", "9abb8e140aad77637ef4a212935a3ec2");
+    assertEquals("9abb8e140aad77637ef4a212935a3ec2", cache.getDigest("md5/0a1b2c3d-10"));
+    assertTrue(new File(directory, "shared/digests/md5/0a/0a1b2c3d-10").isFile());
+    // the same key has the same value, the first one is kept
+    cache.putDigest("md5/0a1b2c3d-10", "other");
+    assertEquals("9abb8e140aad77637ef4a212935a3ec2", cache.getDigest("md5/0a1b2c3d-10"));
+    // seen by another build
+    assertEquals("9abb8e140aad77637ef4a212935a3ec2",
+        new DirectoryFingerprintCache(new File(directory, "shared")).getDigest("md5/0a1b2c3d-10"));
+  }
+
+  @Test
+  public void testContents() throws Exception {
+    DirectoryFingerprintCache cache = new DirectoryFingerprintCache(new File(directory, "shared"));
+    File source = new File(directory, "source.css");
+    FileUtils.writeStringToFile(source, "body{color:red}", StandardCharsets.UTF_8);
+    File target = new File(directory, "target/target.css");
+    assertFalse(cache.getContent("minified/0a1b.css", target));
+    assertFalse(target.exists());
+    cache.putContent("minified/0a1b.css", source);
+    assertTrue(cache.getContent("minified/0a1b.css", target));
+    assertEquals("body{color:red}", FileUtils.readFileToString(target, StandardCharsets.UTF_8));
+    // no temporary file left behind
+    assertEquals(1, new File(directory, "shared/contents/minified/0a").list().length);
+    assertEquals(1, target.getParentFile().list().length);
+  }
+
+  @Test
+  public void testConcurrentPuts() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<String>> futures = new ArrayList<>();
+      for (int i = 0; i < 200; i++) {
+        String key = "md5/" + (i % 10);
+        // a cache per task as each agent has its own
+        DirectoryFingerprintCache cache = new DirectoryFingerprintCache(new File(directory, "shared"));
+        futures.add(executor.submit(() -> {
+          cache.putDigest(key, "digest-" + key);
+          return cache.getDigest(key);
+        }));
+      }
+      for (int i = 0; i < futures.size(); i++) {
+        assertEquals("digest-md5/" + (i % 10), futures.get(i).get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testInvalidKey() throws Exception {
+    thrown.expect(IOException.class);
+    thrown.expectMessage("invalid fingerprint cache key: md5/../escaped");
+    new DirectoryFingerprintCache(new File(directory, "shared")).putDigest("md5/../escaped", "digest");
+  }
+}
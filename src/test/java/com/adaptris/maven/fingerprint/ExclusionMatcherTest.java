@@ -0,0 +1,80 @@
+package com.adaptris.maven.fingerprint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ExclusionMatcherTest {
+
+  @Test
+  public void testMatches() {
+    ExclusionMatcher matcher = new ExclusionMatcher(Arrays.asList("//", "${", "cdn.example.com", "/vendor/"));
+    assertTrue(matcher.matches("//cdn.example.com/lib.js"));
+    assertTrue(matcher.matches("http://other.org/lib.js"));
+    assertTrue(matcher.matches("${contextPath}/css/style.css"));
+    assertTrue(matcher.matches("js/vendor/jquery.js"));
+    assertFalse(matcher.matches("css/style.css"));
+    assertFalse(matcher.matches("/css/style.css"));
+    assertFalse(matcher.matches("$contextPath/vendor.js"));
+    assertFalse(matcher.matches(""));
+  }
+
+  @Test
+  public void testOverlappingResources() {
+    // the failure links must find "bcd" after "abc" fails on "d"
+    ExclusionMatcher matcher = new ExclusionMatcher(Arrays.asList("abce", "bcd", "c.min"));
+    assertTrue(matcher.matches("xabcdx"));
+    assertTrue(matcher.matches("abce"));
+    assertTrue(matcher.matches("abc.min.js"));
+    assertFalse(matcher.matches("abcx"));
+    assertFalse(matcher.matches("ab cd"));
+  }
+
+  @Test
+  public void testNoResource() {
+    ExclusionMatcher matcher = new ExclusionMatcher(Collections.<String>emptyList());
+    assertFalse(matcher.matches("css/style.css"));
+    assertFalse(matcher.matches(""));
+  }
+
+  @Test
+  public void testEmptyResource() {
+    ExclusionMatcher matcher = new ExclusionMatcher(Arrays.asList("cdn", ""));
+    assertTrue(matcher.matches("css/style.css"));
+    assertTrue(matcher.matches(""));
+  }
+
+  @Test
+  public void testSameAsContains() {
+    Random random = new Random(42);
+    for (int i = 0; i < 200; i++) {
+      List<String> excludeResources = new ArrayList<>();
+      for (int j = random.nextInt(5) + 1; j > 0; j--) {
+        excludeResources.add(randomString(random, random.nextInt(4) + 1));
+      }
+      ExclusionMatcher matcher = new ExclusionMatcher(excludeResources);
+      for (int j = 0; j < 50; j++) {
+        String link = randomString(random, random.nextInt(20));
+        boolean expected = excludeResources.stream().anyMatch(link::contains);
+        assertEquals(excludeResources + " in " + link, expected, matcher.matches(link));
+      }
+    }
+  }
+
+  private static String randomString(Random random, int length) {
+    StringBuilder result = new StringBuilder(length);
+    for (int i = 0; i < length; i++) {
+      // a small alphabet so that the resources overlap, and a character none of them has
+      result.append("ab/.z".charAt(random.nextInt(5)));
+    }
+    return result.toString();
+  }
+}
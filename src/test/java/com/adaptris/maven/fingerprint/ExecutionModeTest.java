@@ -0,0 +1,92 @@
+package com.adaptris.maven.fingerprint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class ExecutionModeTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  private final List<String> warnings = new ArrayList<>();
+  private final SystemStreamLog log = new SystemStreamLog() {
+    @Override
+    public void warn(CharSequence content) {
+      warnings.add(content.toString());
+    }
+  };
+
+  @Test
+  public void testParse() throws Exception {
+    assertEquals(ExecutionMode.VIRTUAL, ExecutionMode.parse(" Virtual"));
+    thrown.expect(MojoExecutionException.class);
+    thrown.expectMessage("unknown execution mode: green");
+    ExecutionMode.parse("green");
+  }
+
+  @Test
+  public void testPlatform() throws Exception {
+    assertFalse(ExecutionMode.PLATFORM.isVirtual());
+    assertEquals(2, maxConcurrency(ExecutionMode.PLATFORM.newExecutor(2, 8, log)));
+    assertTrue(warnings.isEmpty());
+  }
+
+  @Test
+  public void testVirtual() throws Exception {
+    boolean virtual = ExecutionMode.virtualThreadFactory() != null;
+    assertEquals(virtual, ExecutionMode.VIRTUAL.isVirtual());
+    ExecutorService executor = ExecutionMode.VIRTUAL.newExecutor(2, 8, log);
+    try {
+      assertEquals(virtual, executor.submit(ExecutionModeTest::isVirtual).get());
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(virtual ? 8 : 2, maxConcurrency(ExecutionMode.VIRTUAL.newExecutor(2, 8, log)));
+    if (!virtual) {
+      assertEquals("virtual threads require java 21 or later, using 2 platform threads", warnings.get(0));
+    }
+  }
+
+  private static boolean isVirtual() {
+    try {
+      return (Boolean) Thread.class.getMethod("isVirtual").invoke(Thread.currentThread());
+    } catch (ReflectiveOperationException e) {
+      return false;
+    }
+  }
+
+  private static int maxConcurrency(ExecutorService executor) throws Exception {
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger max = new AtomicInteger();
+    List<Future<?>> futures = new ArrayList<>();
+    try {
+      for (int i = 0; i < 32; i++) {
+        futures.add(executor.submit(() -> {
+          max.accumulateAndGet(running.incrementAndGet(), Math::max);
+          Thread.sleep(20);
+          running.decrementAndGet();
+          return null;
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    return max.get();
+  }
+}
@@ -4,16 +4,26 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.io.DataInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
 import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.junit.Before;
 import org.junit.Rule;
@@ -372,29 +382,29 @@ public class FingerprintMojoTest {
     File dummyFileForTesting = new File(outputDirectory, "dummy-file-for-testing.html");
     assertTrue("file " + dummyFileForTesting.getAbsolutePath() + " should exist", dummyFileForTesting.exists());
     String fileContent = Utils.readFile(dummyFileForTesting);
-    assertTrue(fileContent.contains("value=\"/favicon.ico?1a32b9900843d1339d968f1e36cb4930\""));
-    assertTrue(fileContent.contains("href=\"css/style.css?0dde3d756e6a436c0b2ff85433038729\""));
-    assertTrue(fileContent.contains("href=\"css/style.css?0dde3d756e6a436c0b2ff85433038729&param=value\""));
-    assertTrue(fileContent.contains("href=\"css/style.css?0dde3d756e6a436c0b2ff85433038729#tag\""));
+    assertTrue(fileContent.contains("value=\"/favicon.ico?ff9e2a0dfb06836b6c079afd75f81369\""));
+    assertTrue(fileContent.contains("href=\"css/style.css?3a0c0986a70b68508a28c069c2e03d05\""));
+    assertTrue(fileContent.contains("href=\"css/style.css?3a0c0986a70b68508a28c069c2e03d05&param=value\""));
+    assertTrue(fileContent.contains("href=\"css/style.css?3a0c0986a70b68508a28c069c2e03d05#tag\""));
     assertTrue(fileContent.contains("href=\"css/doesntexist.css\""));
     assertTrue(fileContent.contains("src=\"//ajax.googleapis.com/ajax/libs/jquery/2.1.0/jquery.min.js\""));
-    assertTrue(fileContent.contains("src=\"/js/script.js?f5039e9ac47dd3f0fbac0d6944e16561\""));
-    assertTrue(fileContent.contains("src=\"./images/image.png?b0330d7d0b6ea9faccc7b93686e18230\""));
+    assertTrue(fileContent.contains("src=\"/js/script.js?69831e24de79a9b48e75a79fdbce9217\""));
+    assertTrue(fileContent.contains("src=\"./images/image.png?41d66b649fa61c971a70f53786d873f4\""));
   }
 
   private void assertSubDummyFile(File outputDirectory) throws MojoExecutionException {
     File dummyFileForTesting = new File(outputDirectory, "sub/dummy-file-for-testing.html");
     assertTrue(dummyFileForTesting.exists());
     String fileContent = Utils.readFile(dummyFileForTesting);
-    assertTrue(fileContent.contains("value=\"../favicon2.ico?1a32b9900843d1339d968f1e36cb4930\""));
-    assertTrue(fileContent.contains("href=\"../css/style.css?0dde3d756e6a436c0b2ff85433038729\""));
-    assertTrue(fileContent.contains("href=\"../css/style.css?0dde3d756e6a436c0b2ff85433038729&param=value\""));
-    assertTrue(fileContent.contains("href=\"../css/style.css?0dde3d756e6a436c0b2ff85433038729#tag\""));
+    assertTrue(fileContent.contains("value=\"../favicon2.ico?ff9e2a0dfb06836b6c079afd75f81369\""));
+    assertTrue(fileContent.contains("href=\"../css/style.css?3a0c0986a70b68508a28c069c2e03d05\""));
+    assertTrue(fileContent.contains("href=\"../css/style.css?3a0c0986a70b68508a28c069c2e03d05&param=value\""));
+    assertTrue(fileContent.contains("href=\"../css/style.css?3a0c0986a70b68508a28c069c2e03d05#tag\""));
     assertTrue(fileContent.contains("href=\"../css/doesntexist.css\""));
     assertTrue(fileContent.contains("src=\"//ajax.googleapis.com/ajax/libs/jquery/2.1.0/jquery.min.js\""));
-    assertTrue(fileContent.contains("src=\"../js/script.js?f5039e9ac47dd3f0fbac0d6944e16561\""));
+    assertTrue(fileContent.contains("src=\"../js/script.js?69831e24de79a9b48e75a79fdbce9217\""));
     assertTrue(
-        fileContent.contains("src=\"../images/image.png?b0330d7d0b6ea9faccc7b93686e18230\""));
+        fileContent.contains("src=\"../images/image.png?41d66b649fa61c971a70f53786d873f4\""));
   }
 
   private void assertIgnoreDummyFile(File outputDirectory) throws MojoExecutionException {
@@ -402,28 +412,28 @@ public class FingerprintMojoTest {
     assertTrue(dummyFileForTesting.exists());
     String fileContent = Utils.readFile(dummyFileForTesting);
     assertTrue(fileContent.contains("value=\"../favicon2.ico\""));
-    assertFalse(fileContent.contains("value=\"../favicon2.ico?1a32b9900843d1339d968f1e36cb4930\""));
+    assertFalse(fileContent.contains("value=\"../favicon2.ico?ff9e2a0dfb06836b6c079afd75f81369\""));
     assertTrue(fileContent.contains("href=\"../css/style.css\""));
-    assertFalse(fileContent.contains("href=\"../css/style.css?0dde3d756e6a436c0b2ff85433038729\""));
+    assertFalse(fileContent.contains("href=\"../css/style.css?3a0c0986a70b68508a28c069c2e03d05\""));
     assertTrue(fileContent.contains("href=\"../css/style.css?param=value\""));
-    assertFalse(fileContent.contains("href=\"../css/style.css?0dde3d756e6a436c0b2ff85433038729&param=value\""));
+    assertFalse(fileContent.contains("href=\"../css/style.css?3a0c0986a70b68508a28c069c2e03d05&param=value\""));
     assertTrue(fileContent.contains("href=\"../css/style.css#tag\""));
-    assertFalse(fileContent.contains("href=\"../css/style.css?0dde3d756e6a436c0b2ff85433038729#tag\""));
+    assertFalse(fileContent.contains("href=\"../css/style.css?3a0c0986a70b68508a28c069c2e03d05#tag\""));
     assertTrue(fileContent.contains("href=\"../css/doesntexist.css\""));
     assertTrue(fileContent.contains("src=\"//ajax.googleapis.com/ajax/libs/jquery/2.1.0/jquery.min.js\""));
     assertTrue(fileContent.contains("src=\"../js/script.js\""));
-    assertFalse(fileContent.contains("src=\"../js/script.js?f5039e9ac47dd3f0fbac0d6944e16561\""));
+    assertFalse(fileContent.contains("src=\"../js/script.js?69831e24de79a9b48e75a79fdbce9217\""));
     assertTrue(fileContent.contains("src=\"../images/image.png\""));
     assertFalse(
-        fileContent.contains("src=\"../images/image.png?b0330d7d0b6ea9faccc7b93686e18230\""));
+        fileContent.contains("src=\"../images/image.png?41d66b649fa61c971a70f53786d873f4\""));
   }
 
   private void assertCssUrl(File outputDirectory) throws MojoExecutionException {
     File cssFile = new File(outputDirectory, "css/style.css");
     assertTrue(cssFile.exists());
     String fileContent = Utils.readFile(cssFile);
-    assertTrue(fileContent.contains("url(\"../images/image.png?b0330d7d0b6ea9faccc7b93686e18230\")"));
-    assertTrue(fileContent.contains("url('../images/image.png?b0330d7d0b6ea9faccc7b93686e18230')"));
+    assertTrue(fileContent.contains("url(\"../images/image.png?41d66b649fa61c971a70f53786d873f4\")"));
+    assertTrue(fileContent.contains("url('../images/image.png?41d66b649fa61c971a70f53786d873f4')"));
   }
 
   private void assertJsUrl(File outputDirectory) throws MojoExecutionException {
@@ -435,6 +445,729 @@ public class FingerprintMojoTest {
     assertTrue(fileContent.contains("differentPatternUrl: 'component.js?29546d842fc6e36303afb9bf1b775377'"));
   }
 
+  @Test
+  public void testExecuteParallelSameAsSequential() throws Exception {
+    File sequentialDirectory = new File(OUTPUT_DIR + "_testSequential");
+    File parallelDirectory = new File(OUTPUT_DIR + "_testParallel");
+    FileUtils.deleteDirectory(sequentialDirectory);
+    FileUtils.deleteDirectory(parallelDirectory);
+
+    configureTargetDir(fingerprintMojo, FingerprintMojo.class, sequentialDirectory.getPath());
+    configureThreads(fingerprintMojo, 1);
+    fingerprintMojo.execute();
+
+    setUp();
+    configureTargetDir(fingerprintMojo, FingerprintMojo.class, parallelDirectory.getPath());
+    configureThreads(fingerprintMojo, 4);
+    fingerprintMojo.execute();
+
+    assertSameContent(sequentialDirectory, parallelDirectory);
+  }
+
+  @Test
+  public void testIncrementalBuild() throws Exception {
+    File sourceDirectory = new File(OUTPUT_DIR + "_testIncrementalSource");
+    File outputDirectory = new File(OUTPUT_DIR + "_testIncremental");
+    File workDirectory = new File(OUTPUT_DIR + "_testIncrementalWork");
+    FileUtils.deleteDirectory(sourceDirectory);
+    FileUtils.deleteDirectory(outputDirectory);
+    FileUtils.deleteDirectory(workDirectory);
+    FileUtils.copyDirectory(new File(INPUT_DIR), sourceDirectory, true);
+
+    executeIncremental(sourceDirectory, outputDirectory, workDirectory);
+    assertTrue(new File(workDirectory, "cache.txt").exists());
+
+    // same length and last modified time: only visible if the file is written again
+    File page = new File(outputDirectory, "dummy-file-for-testing.html");
+    File css = new File(outputDirectory, "css/style.css");
+    String pageContent = Utils.readFile(page);
+    String cssContent = Utils.readFile(css);
+    tamper(page);
+    tamper(css);
+
+    executeIncremental(sourceDirectory, outputDirectory, workDirectory);
+    assertFalse(pageContent.equals(Utils.readFile(page)));
+    assertFalse(cssContent.equals(Utils.readFile(css)));
+
+    // a referenced resource changes, the files referencing it are processed again
+    File image = new File(sourceDirectory, "images/image.png");
+    FileUtils.writeByteArrayToFile(image, new byte[] { 1, 2, 3 });
+    image.setLastModified(image.lastModified() - 10000);
+    String fingerprint = DigestUtils.md5Hex(new byte[] { 1, 2, 3 });
+
+    executeIncremental(sourceDirectory, outputDirectory, workDirectory);
+    assertTrue(Utils.readFile(page).contains("src=\"./images/image.png?" + fingerprint + "\""));
+    assertTrue(Utils.readFile(css).contains("url(\"../images/image.png?" + fingerprint + "\")"));
+    // and so are the files referencing them, the css being fingerprinted from its rewritten content
+    assertTrue(Utils.readFile(page).contains("href=\"css/style.css?" + Utils.generateMd5Fingerprint(css) + "\""));
+  }
+
+  @Test
+  public void testIncrementalBuildManifest() throws Exception {
+    File outputDirectory = new File(OUTPUT_DIR + "_testIncrementalManifest");
+    FileUtils.deleteDirectory(outputDirectory);
+    File manifest = new File(outputDirectory, "asset-manifest.json");
+    File metricsFile = new File(outputDirectory, "fingerprint-metrics.json");
+    List<String> manifests = new ArrayList<>();
+    for (int i = 0; i < 2; i++) {
+      setUp();
+      configureTargetDir(fingerprintMojo, FingerprintMojo.class, outputDirectory.getPath());
+      setField("workDirectory", new File(outputDirectory, "work"));
+      setField("manifest", manifest);
+      setField("metricsFile", metricsFile);
+      fingerprintMojo.execute();
+      manifests.add(FileUtils.readFileToString(manifest, StandardCharsets.UTF_8));
+      // only the page is processed again by the next build
+      File page = new File(outputDirectory, "dummy-file-for-testing.html");
+      page.setLastModified(page.lastModified() - 10000);
+    }
+
+    // the resources referenced by the files up to date, e.g. by the script, are in the manifest as well
+    assertTrue(FileUtils.readFileToString(metricsFile, StandardCharsets.UTF_8).contains("\"filesUpToDate\": 5,"));
+    assertTrue(manifests.get(1).contains("\"js/component.js\": {\"path\": \"js/component.js?"
+        + "29546d842fc6e36303afb9bf1b775377\", \"fingerprint\": \"29546d842fc6e36303afb9bf1b775377\", \"size\": 83}"));
+    assertTrue(manifests.get(1).contains("\"js/component.tmpl.html\": {\"path\": \"js/component.tmpl.html?"
+        + "cb254044d90893fa918b79d272827fae\", \"fingerprint\": \"cb254044d90893fa918b79d272827fae\", \"size\": 23}"));
+    assertEquals(manifests.get(0), manifests.get(1));
+    assertFalse(new File(outputDirectory, "asset-manifest.json.tmp").exists());
+  }
+
+  @Test
+  public void testIncrementalBuildMinifiedCache() throws Exception {
+    File outputDirectory = new File(OUTPUT_DIR + "_testIncrementalMinifiedCache");
+    File workDirectory = new File(outputDirectory, "work");
+    FileUtils.deleteDirectory(outputDirectory);
+    File metricsFile = new File(outputDirectory, "fingerprint-metrics.json");
+    List<List<String>> minified = new ArrayList<>();
+    for (int i = 0; i < 2; i++) {
+      setUp();
+      configureTargetDir(fingerprintMojo, FingerprintMojo.class, new File(outputDirectory, "target").getPath());
+      setField("workDirectory", workDirectory);
+      setField("metricsFile", metricsFile);
+      setField("minifyExtensions", Arrays.asList("js", "css"));
+      fingerprintMojo.execute();
+      String[] names = new File(workDirectory, "minified").list();
+      Arrays.sort(names);
+      minified.add(Arrays.asList(names));
+    }
+
+    // the contents of the files up to date, not minified by the second build, are kept for the next one
+    assertTrue(FileUtils.readFileToString(metricsFile, StandardCharsets.UTF_8).contains("\"filesUpToDate\": 6,"));
+    assertFalse(minified.get(0).isEmpty());
+    assertEquals(minified.get(0), minified.get(1));
+  }
+
+  @Test
+  public void testExecuteSkipUnchangedWrites() throws Exception {
+    File outputDirectory = new File(OUTPUT_DIR + "_testSkipUnchangedWrites");
+    FileUtils.deleteDirectory(outputDirectory);
+    configureTargetDir(fingerprintMojo, FingerprintMojo.class, outputDirectory.getPath());
+    fingerprintMojo.execute();
+    File page = new File(outputDirectory, "dummy-file-for-testing.html");
+    long lastModified = page.lastModified() - 10000;
+    page.setLastModified(lastModified);
+
+    setUp();
+    configureTargetDir(fingerprintMojo, FingerprintMojo.class, outputDirectory.getPath());
+    fingerprintMojo.execute();
+    assertEquals(lastModified, page.lastModified());
+
+    setUp();
+    configureTargetDir(fingerprintMojo, FingerprintMojo.class, outputDirectory.getPath());
+    setField("skipUnchangedWrites", false);
+    fingerprintMojo.execute();
+    assertFalse(lastModified == page.lastModified());
+  }
+
+  @Test
+  public void testCopyDeepFiles() throws Exception {
+    File sourceDirectory = new File(OUTPUT_DIR + "_testCopyDeepFilesSource");
+    File outputDirectory = new File(OUTPUT_DIR + "_testCopyDeepFiles");
+    FileUtils.deleteDirectory(sourceDirectory);
+    FileUtils.deleteDirectory(outputDirectory);
+    FileUtils.copyDirectory(new File(INPUT_DIR), sourceDirectory, true);
+    assertTrue(new File(sourceDirectory, "empty/sub").mkdirs());
+
+    configureThreads(fingerprintMojo, 4);
+    fingerprintMojo.copyDeepFiles(sourceDirectory, outputDirectory);
+    assertTrue(new File(outputDirectory, "empty/sub").isDirectory());
+    assertSameContent(sourceDirectory, outputDirectory);
+  }
+
+  @Test
+  public void testExecuteHashAlgorithm() throws Exception {
+    File outputDirectory = new File(OUTPUT_DIR + "_testHashAlgorithm");
+    FileUtils.deleteDirectory(outputDirectory);
+    configureTargetDir(fingerprintMojo, FingerprintMojo.class, outputDirectory.getPath());
+    setField("hashAlgorithm", "SHA-256");
+    setField("fingerprintLength", 10);
+    fingerprintMojo.execute();
+
+    String fingerprint = DigestUtils.sha256Hex(FileUtils.readFileToByteArray(new File(INPUT_DIR, "images/image.png")))
+        .substring(0, 10);
+    String fileContent = Utils.readFile(new File(outputDirectory, "dummy-file-for-testing.html"));
+    assertTrue(fileContent.contains("src=\"./images/image.png?" + fingerprint + "\""));
+    assertTrue(Utils.readFile(new File(outputDirectory, "css/style.css"))
+        .contains("url(\"../images/image.png?" + fingerprint + "\")"));
+  }
+
+  @Test
+  public void testUnknownHashAlgorithm() throws Exception {
+    thrown.expect(MojoExecutionException.class);
+    thrown.expectMessage("unknown hash algorithm: sha3");
+
+    setField("hashAlgorithm", "sha3");
+    fingerprintMojo.execute();
+  }
+
+  @Test
+  public void testFindDuplicates() throws Exception {
+    File outputDirectory = new File(OUTPUT_DIR + "_testFindDuplicates");
+    FileUtils.deleteDirectory(outputDirectory);
+    configureTargetDir(fingerprintMojo, FingerprintMojo.class, outputDirectory.getPath());
+    setField("reportDuplicates", true);
+    fingerprintMojo.execute();
+
+    // css/style.css is referenced as css/style.css and ../css/style.css but is a single file
+    List<List<String>> duplicates = fingerprintMojo.findDuplicates();
+    assertEquals(1, duplicates.size());
+    assertEquals(Arrays.asList(new File(INPUT_DIR, "favicon.ico").getCanonicalPath(),
+        new File(INPUT_DIR, "favicon2.ico").getCanonicalPath()), duplicates.get(0));
+  }
+
+  @Test
+  public void testFindDuplicatesProcessed() throws Exception {
+    File sourceDirectory = new File(OUTPUT_DIR + "_testFindDuplicatesProcessedSource");
+    File outputDirectory = new File(OUTPUT_DIR + "_testFindDuplicatesProcessed");
+    FileUtils.deleteDirectory(sourceDirectory);
+    FileUtils.deleteDirectory(outputDirectory);
+    FileUtils.writeStringToFile(new File(sourceDirectory, "index.html"),
+        "<link href=\"a/style.css\">\n<link href=\"b/style.css\">\n", StandardCharsets.UTF_8);
+    for (String directory : Arrays.asList("a", "b")) {
+      FileUtils.writeStringToFile(new File(sourceDirectory, directory + "/style.css"),
+          "a { background: url(\"image.png\") }", StandardCharsets.UTF_8);
+      FileUtils.writeStringToFile(new File(sourceDirectory, directory + "/image.png"), directory,
+          StandardCharsets.UTF_8);
+    }
+    setField("sourceDirectory", sourceDirectory);
+    configureTargetDir(fingerprintMojo, FingerprintMojo.class, outputDirectory.getPath());
+    fingerprintMojo.execute();
+
+    // identical sources, rewritten with the fingerprint of different images
+    assertFalse(FileUtils.contentEquals(new File(outputDirectory, "a/style.css"),
+        new File(outputDirectory, "b/style.css")));
+    List<List<String>> duplicates = fingerprintMojo.findDuplicates();
+    assertEquals(1, duplicates.size());
+    assertEquals(Arrays.asList(new File(sourceDirectory, "a/style.css").getCanonicalPath(),
+        new File(sourceDirectory, "b/style.css").getCanonicalPath()), duplicates.get(0));
+  }
+
+  @Test
+  public void testExecuteFilenameMode() throws Exception {
+    File outputDirectory = new File(OUTPUT_DIR + "_testFilenameMode");
+    FileUtils.deleteDirectory(outputDirectory);
+    configureTargetDir(fingerprintMojo, FingerprintMojo.class, outputDirectory.getPath());
+    setField("fingerprintMode", "filename");
+    fingerprintMojo.execute();
+
+    String fileContent = Utils.readFile(new File(outputDirectory, "dummy-file-for-testing.html"));
+    assertTrue(fileContent.contains("value=\"/favicon.ff9e2a0dfb06836b6c079afd75f81369.ico\""));
+    assertTrue(fileContent.contains("href=\"css/style.9abb8e140aad77637ef4a212935a3ec2.css\""));
+    assertTrue(fileContent.contains("href=\"css/style.9abb8e140aad77637ef4a212935a3ec2.css?param=value\""));
+    assertTrue(fileContent.contains("href=\"css/style.9abb8e140aad77637ef4a212935a3ec2.css#tag\""));
+    assertTrue(fileContent.contains("href=\"css/doesntexist.css\""));
+    assertTrue(fileContent.contains("src=\"/js/script.539b69d981376baa891af8ddf5e6d6f5.js\""));
+    assertTrue(fileContent.contains("src=\"./images/image.41d66b649fa61c971a70f53786d873f4.png\""));
+
+    // the processed resources are copied with their links rewritten
+    File css = new File(outputDirectory, "css/style.9abb8e140aad77637ef4a212935a3ec2.css");
+    assertEquals(Utils.readFile(new File(outputDirectory, "css/style.css")), Utils.readFile(css));
+    assertTrue(Utils.readFile(css).contains("url(\"../images/image.41d66b649fa61c971a70f53786d873f4.png\")"));
+    assertTrue(FileUtils.contentEquals(new File(INPUT_DIR, "images/image.png"),
+        new File(outputDirectory, "images/image.41d66b649fa61c971a70f53786d873f4.png")));
+    assertTrue(new File(outputDirectory, "js/component.tmpl.cb254044d90893fa918b79d272827fae.html").exists());
+  }
+
+  @Test
+  public void testExecuteDirectoryMode() throws Exception {
+    File outputDirectory = new File(OUTPUT_DIR + "_testDirectoryMode");
+    FileUtils.deleteDirectory(outputDirectory);
+    configureTargetDir(fingerprintMojo, FingerprintMojo.class, outputDirectory.getPath());
+    setField("fingerprintMode", "directory");
+    fingerprintMojo.execute();
+
+    String fileContent = Utils.readFile(new File(outputDirectory, "sub/dummy-file-for-testing.html"));
+    assertTrue(fileContent.contains("href=\"../css/e3b66dbc2682b993a5d9e6de497125f6/style.css?param=value\""));
+    assertTrue(fileContent.contains("src=\"../images/41d66b649fa61c971a70f53786d873f4/image.png\""));
+    File copy = new File(outputDirectory, "css/e3b66dbc2682b993a5d9e6de497125f6/style.css");
+    Matcher link = Pattern.compile("url\\(\"(.*?)\"\\)").matcher(Utils.readFile(copy));
+    assertTrue(link.find());
+    // one directory up from the copy
+    assertEquals("../../images/41d66b649fa61c971a70f53786d873f4/image.png", link.group(1));
+    assertTrue(new File(copy.getParentFile(), link.group(1)).isFile());
+    assertTrue(new File(outputDirectory, "favicon2.ico").exists());
+    assertTrue(new File(outputDirectory, "ff9e2a0dfb06836b6c079afd75f81369/favicon2.ico").exists());
+  }
+
+  @Test
+  public void testUnknownFingerprintMode() throws Exception {
+    thrown.expect(MojoExecutionException.class);
+    thrown.expectMessage("unknown fingerprint mode: path");
+
+    setField("fingerprintMode", "path");
+    fingerprintMojo.execute();
+  }
+
+  @Test
+  public void testExecuteManifest() throws Exception {
+    File outputDirectory = new File(OUTPUT_DIR + "_testManifest");
+    FileUtils.deleteDirectory(outputDirectory);
+    File manifest = new File(outputDirectory, "asset-manifest.json");
+    configureTargetDir(fingerprintMojo, FingerprintMojo.class, outputDirectory.getPath());
+    setField("manifest", manifest);
+    fingerprintMojo.execute();
+
+    List<String> lines = FileUtils.readLines(manifest, StandardCharsets.UTF_8);
+    assertEquals("{", lines.get(0));
+    assertEquals("  \"css/style.css\": {\"path\": \"css/style.css?3a0c0986a70b68508a28c069c2e03d05\", "
+        + "\"fingerprint\": \"3a0c0986a70b68508a28c069c2e03d05\", \"size\": "
+        + new File(outputDirectory, "css/style.css").length() + "},", lines.get(1));
+    assertEquals("  \"favicon.ico\": {\"path\": \"favicon.ico?ff9e2a0dfb06836b6c079afd75f81369\", "
+        + "\"fingerprint\": \"ff9e2a0dfb06836b6c079afd75f81369\", \"size\": "
+        + new File(INPUT_DIR, "favicon.ico").length() + "},", lines.get(2));
+    assertEquals("}", lines.get(lines.size() - 1));
+    // css, 2 favicons, image, 2 components and the script
+    assertEquals(9, lines.size());
+  }
+
+  @Test
+  public void testExecuteMetrics() throws Exception {
+    File outputDirectory = new File(OUTPUT_DIR + "_testMetrics");
+    FileUtils.deleteDirectory(outputDirectory);
+    File metricsFile = new File(outputDirectory, "fingerprint-metrics.json");
+    configureTargetDir(fingerprintMojo, FingerprintMojo.class, outputDirectory.getPath());
+    setField("metricsFile", metricsFile);
+    setField("metricsSlowestFiles", 2);
+    fingerprintMojo.execute();
+
+    String metrics = FileUtils.readFileToString(metricsFile, StandardCharsets.UTF_8);
+    assertTrue(metrics.startsWith("{\n  \"totalMillis\": "));
+    assertTrue(metrics.contains("\"filesProcessed\": 6,"));
+    assertTrue(metrics.contains("\"filesUpToDate\": 0,"));
+    assertTrue(metrics.contains("\"linksRewritten\": 17,"));
+    // the jquery cdn link of both pages and their link to doesntexist.css
+    assertTrue(metrics.contains("\"linksExcluded\": 2,"));
+    assertTrue(metrics.contains("\"linksMissing\": 2,"));
+    assertTrue(metrics.contains("{\"pattern\": \"(<link.*?href=\\\")(.*?)(\\\".*?>)\", \"links\": 8, "));
+    // the two slowest files
+    assertEquals(3, metrics.split("\\{\"path\": ", -1).length);
+
+    // the second build finds everything up to date
+    setField("workDirectory", new File(outputDirectory, "work"));
+    fingerprintMojo.execute();
+    fingerprintMojo.execute();
+    metrics = FileUtils.readFileToString(metricsFile, StandardCharsets.UTF_8);
+    assertTrue(metrics.contains("\"filesProcessed\": 0,"));
+    assertTrue(metrics.contains("\"filesUpToDate\": 6,"));
+  }
+
+  @Test
+  public void testExecuteBinaryManifest() throws Exception {
+    File outputDirectory = new File(OUTPUT_DIR + "_testBinaryManifest");
+    FileUtils.deleteDirectory(outputDirectory);
+    File manifest = new File(outputDirectory, "asset-manifest.bin");
+    configureTargetDir(fingerprintMojo, FingerprintMojo.class, outputDirectory.getPath());
+    setField("manifest", manifest);
+    setField("manifestFormat", "binary");
+    setField("fingerprintMode", "filename");
+    fingerprintMojo.execute();
+
+    try (DataInputStream in = new DataInputStream(new FileInputStream(manifest))) {
+      byte[] magic = new byte[4];
+      in.readFully(magic);
+      assertEquals("FPM1", new String(magic, StandardCharsets.US_ASCII));
+      assertEquals(7, in.readInt());
+      assertEquals("css/style.css", in.readUTF());
+      assertEquals("css/style.9abb8e140aad77637ef4a212935a3ec2.css", in.readUTF());
+      assertEquals("9abb8e140aad77637ef4a212935a3ec2", in.readUTF());
+      assertEquals(new File(outputDirectory, "css/style.css").length(), in.readLong());
+    }
+  }
+
+  @Test
+  public void testExecuteGzip() throws Exception {
+    File outputDirectory = new File(OUTPUT_DIR + "_testGzip");
+    FileUtils.deleteDirectory(outputDirectory);
+    configureTargetDir(fingerprintMojo, FingerprintMojo.class, outputDirectory.getPath());
+    setField("gzip", true);
+    setField("compressMinSize", 100L);
+    fingerprintMojo.execute();
+
+    File css = new File(outputDirectory, "css/style.css");
+    File gz = new File(outputDirectory, "css/style.css.gz");
+    try (InputStream is = new GZIPInputStream(new FileInputStream(gz))) {
+      assertEquals(Utils.readFile(css), IOUtils.toString(is, StandardCharsets.UTF_8));
+    }
+    assertEquals(css.lastModified(), gz.lastModified());
+    assertTrue(new File(outputDirectory, "favicon.ico.gz").exists());
+    // too small
+    assertFalse(new File(outputDirectory, "js/component.js.gz").exists());
+    // not a compressed extension
+    assertFalse(new File(outputDirectory, "images/image.png.gz").exists());
+
+    // unchanged files are not compressed again
+    FileUtils.writeStringToFile(gz, "not compressed again", StandardCharsets.UTF_8);
+    gz.setLastModified(css.lastModified());
+    setUp();
+    configureTargetDir(fingerprintMojo, FingerprintMojo.class, outputDirectory.getPath());
+    setField("gzip", true);
+    setField("compressMinSize", 100L);
+    fingerprintMojo.execute();
+    assertEquals("not compressed again", Utils.readFile(gz));
+  }
+
+  @Test
+  public void testExecuteSharedCache() throws Exception {
+    File outputDirectory = new File(OUTPUT_DIR + "_testSharedCache");
+    FileUtils.deleteDirectory(outputDirectory);
+    executeAgents(outputDirectory, "file");
+
+    String metrics1 = FileUtils.readFileToString(new File(outputDirectory, "agent1-metrics.json"),
+        StandardCharsets.UTF_8);
+    assertFalse(metrics1.contains("\"digestsComputed\": 0,"));
+    String metrics2 = FileUtils.readFileToString(new File(outputDirectory, "agent2-metrics.json"),
+        StandardCharsets.UTF_8);
+    // the resources the first agent hashed, but the processed ones and their compressed copies, keyed on the path
+    // of their own target
+    assertFalse(metrics2.contains("\"digestsShared\": 0,"));
+    assertTrue(new File(outputDirectory, "shared/contents/minified").isDirectory());
+    for (String path : Arrays.asList("dummy-file-for-testing.html", "js/script.js", "css/style.css",
+        "css/style.css.gz")) {
+      File file2 = new File(outputDirectory, "agent2/" + path);
+      assertTrue(path, FileUtils.contentEquals(new File(outputDirectory, "agent1/" + path), file2));
+    }
+    File css = new File(outputDirectory, "agent2/css/style.css");
+    assertEquals(css.lastModified(), new File(outputDirectory, "agent2/css/style.css.gz").lastModified());
+  }
+
+  @Test
+  public void testExecuteSharedCacheContentKey() throws Exception {
+    File outputDirectory = new File(OUTPUT_DIR + "_testSharedCacheContentKey");
+    FileUtils.deleteDirectory(outputDirectory);
+    executeAgents(outputDirectory, "content");
+
+    String metrics2 = FileUtils.readFileToString(new File(outputDirectory, "agent2-metrics.json"),
+        StandardCharsets.UTF_8);
+    // hashing the content to look a digest up costs as much as computing it
+    assertTrue(metrics2.contains("\"digestsShared\": 0,"));
+    assertFalse(metrics2.contains("\"contentsShared\": 0"));
+    assertFalse(new File(outputDirectory, "shared/digests").exists());
+    for (String path : Arrays.asList("dummy-file-for-testing.html", "js/script.js", "css/style.css.gz")) {
+      assertTrue(path, FileUtils.contentEquals(new File(outputDirectory, "agent1/" + path),
+          new File(outputDirectory, "agent2/" + path)));
+    }
+    File css = new File(outputDirectory, "agent2/css/style.css");
+    assertEquals(css.lastModified(), new File(outputDirectory, "agent2/css/style.css.gz").lastModified());
+  }
+
+  /**
+   * Runs two agents with their own target and work directories.
+   */
+  private void executeAgents(File outputDirectory, String cacheKey) throws Exception {
+    for (String agent : Arrays.asList("agent1", "agent2")) {
+      setUp();
+      configureTargetDir(fingerprintMojo, FingerprintMojo.class, new File(outputDirectory, agent).getPath());
+      setField("workDirectory", new File(outputDirectory, agent + "-work"));
+      setField("metricsFile", new File(outputDirectory, agent + "-metrics.json"));
+      setField("fingerprintCache", new File(outputDirectory, "shared").getPath());
+      setField("fingerprintCacheKey", cacheKey);
+      setField("minifyExtensions", Arrays.asList("js", "css"));
+      setField("gzip", true);
+      setField("compressMinSize", 100L);
+      fingerprintMojo.execute();
+    }
+  }
+
+  @Test
+  public void testExecuteSharedCacheUnavailable() throws Exception {
+    File outputDirectory = new File(OUTPUT_DIR + "_testSharedCacheUnavailable");
+    FileUtils.deleteDirectory(outputDirectory);
+    configureTargetDir(fingerprintMojo, FingerprintMojo.class, outputDirectory.getPath());
+    // a file, no entry can be written under it
+    setField("fingerprintCache", new File(INPUT_DIR, "css/style.css").getPath());
+    fingerprintMojo.execute();
+
+    String fileContent = Utils.readFile(new File(outputDirectory, "dummy-file-for-testing.html"));
+    assertTrue(fileContent.contains("href=\"css/style.css?3a0c0986a70b68508a28c069c2e03d05\""));
+  }
+
+  @Test
+  public void testExecuteSharedCacheLineEndings() throws Exception {
+    File sourceDirectory = new File(OUTPUT_DIR + "_testSharedCacheLineEndingsSource");
+    File outputDirectory = new File(OUTPUT_DIR + "_testSharedCacheLineEndings");
+    FileUtils.deleteDirectory(sourceDirectory);
+    FileUtils.deleteDirectory(outputDirectory);
+    FileUtils.writeStringToFile(new File(sourceDirectory, "index.html"),
+        "<img src=\"a.txt\">\n<img src=\"a.dat\">\n", StandardCharsets.UTF_8);
+    // the same bytes, normalised in the text file only
+    File text = new File(sourceDirectory, "a.txt");
+    File binary = new File(sourceDirectory, "a.dat");
+    FileUtils.writeStringToFile(text, "a\r\nb", StandardCharsets.UTF_8);
+    FileUtils.writeStringToFile(binary, "a\r\nb", StandardCharsets.UTF_8);
+    configureSource(sourceDirectory, new File(outputDirectory, "target"));
+    setField("fingerprintCache", new File(outputDirectory, "shared").getPath());
+    setField("fingerprintCacheKey", "file");
+    setField("threads", 1);
+    fingerprintMojo.execute();
+
+    String fileContent = Utils.readFile(new File(outputDirectory, "target/index.html"));
+    assertTrue(fileContent.contains("a.txt?" + Utils.generateFingerprint(text, HashAlgorithm.MD5)));
+    assertTrue(fileContent.contains("a.dat?" + Utils.generateFingerprint(binary, HashAlgorithm.MD5)));
+  }
+
+  @Test
+  public void testExecuteUnknownSharedCacheKey() throws Exception {
+    setField("fingerprintCacheKey", "inode");
+    thrown.expect(MojoExecutionException.class);
+    thrown.expectMessage("unknown fingerprint cache key: inode");
+    fingerprintMojo.execute();
+  }
+
+  @Test
+  public void testExecuteReactor() throws Exception {
+    File outputDirectory = new File(OUTPUT_DIR + "_testReactor");
+    FileUtils.deleteDirectory(outputDirectory);
+    MavenSession session = ReactorIndexTest.newSession();
+    // two modules of the same build processing only their pages, each given its copy of the session
+    for (String module : Arrays.asList("module1", "module2")) {
+      setUp();
+      configureTargetDir(fingerprintMojo, FingerprintMojo.class, new File(outputDirectory, module).getPath());
+      setField("includes", Arrays.asList("**/*.html"));
+      setField("metricsFile", new File(outputDirectory, module + "-metrics.json"));
+      setField("session", session.clone());
+      fingerprintMojo.execute();
+    }
+
+    String metrics1 = FileUtils.readFileToString(new File(outputDirectory, "module1-metrics.json"),
+        StandardCharsets.UTF_8);
+    assertTrue(metrics1.contains("\"digestsFromReactor\": 0,"));
+    String metrics2 = FileUtils.readFileToString(new File(outputDirectory, "module2-metrics.json"),
+        StandardCharsets.UTF_8);
+    // the resources linked by the pages were hashed by the first module
+    assertTrue(metrics2.contains("\"digestsComputed\": 0,"));
+    assertFalse(metrics2.contains("\"digestsFromReactor\": 0,"));
+    File page2 = new File(outputDirectory, "module2/dummy-file-for-testing.html");
+    assertTrue(FileUtils.contentEquals(new File(outputDirectory, "module1/dummy-file-for-testing.html"), page2));
+    assertTrue(Utils.readFile(page2).contains("href=\"css/style.css?"));
+  }
+
+  @Test
+  public void testExecuteVirtualThreads() throws Exception {
+    File outputDirectory = new File(OUTPUT_DIR + "_testVirtualThreads");
+    FileUtils.deleteDirectory(outputDirectory);
+    for (String mode : Arrays.asList("platform", "virtual")) {
+      setUp();
+      configureTargetDir(fingerprintMojo, FingerprintMojo.class, new File(outputDirectory, mode).getPath());
+      setField("executionMode", mode);
+      setField("ioConcurrency", 16);
+      setField("minifyExtensions", Arrays.asList("js", "css", "html"));
+      setField("gzip", true);
+      setField("compressMinSize", 100L);
+      fingerprintMojo.execute();
+    }
+
+    for (File platform : FileUtils.listFiles(new File(outputDirectory, "platform"), null, true)) {
+      String path = platform.getPath().substring(new File(outputDirectory, "platform").getPath().length());
+      assertTrue(path, FileUtils.contentEquals(platform, new File(outputDirectory, "virtual" + path)));
+    }
+  }
+
+  @Test
+  public void testExecuteStreaming() throws Exception {
+    File outputDirectory = new File(OUTPUT_DIR + "_testStreaming");
+    FileUtils.deleteDirectory(outputDirectory);
+    for (long threshold : new long[] { 0L, 1L }) {
+      setUp();
+      configureTargetDir(fingerprintMojo, FingerprintMojo.class, new File(outputDirectory, "" + threshold).getPath());
+      // every file streamed but the ones minified by yui compressor
+      setField("streamingThreshold", threshold);
+      setField("streamingWindow", 256);
+      setField("minifyExtensions", Arrays.asList("js", "css", "html"));
+      setField("gzip", true);
+      setField("compressMinSize", 100L);
+      fingerprintMojo.execute();
+    }
+
+    for (File whole : FileUtils.listFiles(new File(outputDirectory, "0"), null, true)) {
+      String path = whole.getPath().substring(new File(outputDirectory, "0").getPath().length());
+      assertTrue(path, FileUtils.contentEquals(whole, new File(outputDirectory, "1" + path)));
+    }
+  }
+
+  @Test
+  public void testExecuteUnknownExecutionMode() throws Exception {
+    setField("executionMode", "green");
+    thrown.expect(MojoExecutionException.class);
+    thrown.expectMessage("unknown execution mode: green");
+    fingerprintMojo.execute();
+  }
+
+  @Test
+  public void testExecuteMinify() throws Exception {
+    File outputDirectory = new File(OUTPUT_DIR + "_testMinify");
+    File workDirectory = new File(OUTPUT_DIR + "_testMinifyWork");
+    FileUtils.deleteDirectory(outputDirectory);
+    FileUtils.deleteDirectory(workDirectory);
+    configureTargetDir(fingerprintMojo, FingerprintMojo.class, outputDirectory.getPath());
+    setField("workDirectory", workDirectory);
+    setField("minifyExtensions", Arrays.asList("js", "css"));
+    fingerprintMojo.execute();
+
+    // fingerprinted after being minified
+    File component = new File(outputDirectory, "js/component.js");
+    String minifiedComponent = Utils.readFile(component);
+    assertEquals("viewModel=function(a){};viewModel.prototype.dispose=function(){};", minifiedComponent);
+    String script = Utils.readFile(new File(outputDirectory, "js/script.js"));
+    assertFalse(script.contains("\n"));
+    assertTrue(script.contains("fromUrl:\"component.js?" + DigestUtils.md5Hex(minifiedComponent) + "\""));
+    assertTrue(script.contains("differentPatternUrl:\"component.js?" + DigestUtils.md5Hex(minifiedComponent) + "\""));
+    String css = Utils.readFile(new File(outputDirectory, "css/style.css"));
+    assertTrue(css.contains("url(\"../images/image.png?41d66b649fa61c971a70f53786d873f4\")"));
+    assertFalse(css.contains("\n"));
+    // fingerprinted from its rewritten content
+    assertTrue(Utils.readFile(new File(outputDirectory, "dummy-file-for-testing.html"))
+        .contains("href=\"css/style.css?" + DigestUtils.md5Hex(css) + "\""));
+
+    // the cached minified contents are used, the unused ones are removed
+    File unused = new File(workDirectory, "minified/unused.js");
+    FileUtils.writeStringToFile(unused, "", StandardCharsets.UTF_8);
+    File cachedComponent = new File(workDirectory,
+        "minified/" + DigestUtils.sha256Hex(FileUtils.readFileToByteArray(new File(INPUT_DIR, "js/component.js")))
+            + ".js");
+    FileUtils.writeStringToFile(cachedComponent, "var cached;", StandardCharsets.UTF_8);
+    setUp();
+    configureTargetDir(fingerprintMojo, FingerprintMojo.class, outputDirectory.getPath());
+    setField("workDirectory", workDirectory);
+    setField("minifyExtensions", Arrays.asList("js", "css"));
+    // processed again even though unchanged
+    setField("incremental", false);
+    fingerprintMojo.execute();
+    assertEquals("var cached;", Utils.readFile(component));
+    assertFalse(unused.exists());
+  }
+
+  @Test
+  public void testExecuteMinifyHtml() throws Exception {
+    File outputDirectory = new File(OUTPUT_DIR + "_testMinifyHtml");
+    FileUtils.deleteDirectory(outputDirectory);
+    configureTargetDir(fingerprintMojo, FingerprintMojo.class, outputDirectory.getPath());
+    setField("minifyExtensions", Arrays.asList("html"));
+    fingerprintMojo.execute();
+
+    String fileContent = Utils.readFile(new File(outputDirectory, "dummy-file-for-testing.html"));
+    assertTrue(fileContent.startsWith("<!DOCTYPE html><html lang=\"en\"><head><c:url value=\"/favicon.ico?"
+        + "ff9e2a0dfb06836b6c079afd75f81369\" var=\"faviconUrl\"/><link rel=\"stylesheet\" "
+        + "href=\"css/style.css?3a0c0986a70b68508a28c069c2e03d05\" />"));
+    assertTrue(fileContent.contains("<img src=\"./images/image.png?41d66b649fa61c971a70f53786d873f4\" /></body>"));
+    // css isn't minified
+    assertTrue(Utils.readFile(new File(outputDirectory, "css/style.css")).contains("\n"));
+  }
+
+  @Test
+  public void testUnsupportedMinifyExtension() throws Exception {
+    thrown.expect(MojoExecutionException.class);
+    thrown.expectMessage("unsupported minify extension: php");
+
+    setField("minifyExtensions", Arrays.asList("js", "php"));
+    fingerprintMojo.execute();
+  }
+
+  @Test
+  public void testExecuteHardlink() throws Exception {
+    File sourceDirectory = new File(OUTPUT_DIR + "_testHardlinkSource");
+    File outputDirectory = new File(OUTPUT_DIR + "_testHardlink");
+    FileUtils.deleteDirectory(sourceDirectory);
+    FileUtils.deleteDirectory(outputDirectory);
+    FileUtils.copyDirectory(new File(INPUT_DIR), sourceDirectory, true);
+    String css = Utils.readFile(new File(sourceDirectory, "css/style.css"));
+
+    setUp();
+    configureSource(sourceDirectory, outputDirectory);
+    setField("copyMode", "hardlink");
+    setField("includes", new ArrayList<>(Arrays.asList("**/*.html")));
+    fingerprintMojo.execute();
+    assertTrue(Files.isSameFile(new File(sourceDirectory, "images/image.png").toPath(),
+        new File(outputDirectory, "images/image.png").toPath()));
+    assertTrue(Files.isSameFile(new File(sourceDirectory, "css/style.css").toPath(),
+        new File(outputDirectory, "css/style.css").toPath()));
+
+    // css/style.css is now processed, its source must not be changed through the link
+    setUp();
+    configureSource(sourceDirectory, outputDirectory);
+    setField("copyMode", "hardlink");
+    fingerprintMojo.execute();
+    assertEquals(css, Utils.readFile(new File(sourceDirectory, "css/style.css")));
+    assertFalse(Files.isSameFile(new File(sourceDirectory, "css/style.css").toPath(),
+        new File(outputDirectory, "css/style.css").toPath()));
+    assertCssUrl(outputDirectory);
+  }
+
+  @Test
+  public void testUnknownCopyMode() throws Exception {
+    thrown.expect(MojoExecutionException.class);
+    thrown.expectMessage("unknown copy mode: move");
+
+    setField("copyMode", "move");
+    fingerprintMojo.execute();
+  }
+
+  private void configureSource(File sourceDirectory, File outputDirectory) throws Exception {
+    setField("sourceDirectory", sourceDirectory);
+    configureTargetDir(fingerprintMojo, FingerprintMojo.class, outputDirectory.getPath());
+  }
+
+  private void setField(String name, Object value) throws Exception {
+    Field field = FingerprintMojo.class.getDeclaredField(name);
+    field.setAccessible(true);
+    field.set(fingerprintMojo, value);
+  }
+
+  private void executeIncremental(File sourceDirectory, File outputDirectory, File workDirectory) throws Exception {
+    setUp();
+    Class<FingerprintMojo> clazz = FingerprintMojo.class;
+    Field sourceDirectoryField = clazz.getDeclaredField("sourceDirectory");
+    sourceDirectoryField.setAccessible(true);
+    sourceDirectoryField.set(fingerprintMojo, sourceDirectory);
+    configureTargetDir(fingerprintMojo, clazz, outputDirectory.getPath());
+    Field workDirectoryField = clazz.getDeclaredField("workDirectory");
+    workDirectoryField.setAccessible(true);
+    workDirectoryField.set(fingerprintMojo, workDirectory);
+    fingerprintMojo.execute();
+  }
+
+  private void tamper(File file) throws Exception {
+    long lastModified = file.lastModified();
+    byte[] content = FileUtils.readFileToByteArray(file);
+    content[0] = (byte) (content[0] == 'x' ? 'y' : 'x');
+    FileUtils.writeByteArrayToFile(file, content);
+    file.setLastModified(lastModified);
+  }
+
+  private void configureThreads(FingerprintMojo fingerprintMojo, int threads) throws Exception {
+    Field threadsField = FingerprintMojo.class.getDeclaredField("threads");
+    threadsField.setAccessible(true);
+    threadsField.set(fingerprintMojo, threads);
+  }
+
+  private void assertSameContent(File expectedDirectory, File actualDirectory) throws Exception {
+    for (File expected : FileUtils.listFiles(expectedDirectory, null, true)) {
+      File actual = new File(actualDirectory, FingerprintMojo.stripSourceDirectory(expectedDirectory, expected));
+      assertTrue("file " + actual.getAbsolutePath() + " should exist", actual.exists());
+      assertTrue("file " + actual.getAbsolutePath() + " should be identical",
+          FileUtils.contentEquals(expected, actual));
+    }
+  }
+
   @Test
   public void testGenerateTargetFilename() throws Exception {
     File file = new File("src/test/resources/to-parse/dummy-file-for-testing.txt");
@@ -443,4 +1176,21 @@ public class FingerprintMojoTest {
     assertEquals(File.separator + "dummy-file-for-testing.txt", targetHtmlFilename);
   }
 
+  @Test
+  public void testGenerateTargetResourceFilename() throws Exception {
+    assertEquals("../js/app.js?abc", FingerprintMojo.generateTargetResourceFilename("../js/app.js", "abc"));
+    assertEquals("app.abc.js",
+        FingerprintMojo.generateTargetResourceFilename("app.js", "abc", FingerprintMode.FILENAME));
+    assertEquals("/js/app.min.abc.js",
+        FingerprintMojo.generateTargetResourceFilename("/js/app.min.js", "abc", FingerprintMode.FILENAME));
+    assertEquals("./LICENSE.abc",
+        FingerprintMojo.generateTargetResourceFilename("./LICENSE", "abc", FingerprintMode.FILENAME));
+    assertEquals("../.htaccess.abc",
+        FingerprintMojo.generateTargetResourceFilename("../.htaccess", "abc", FingerprintMode.FILENAME));
+    assertEquals("/js/abc/app.js",
+        FingerprintMojo.generateTargetResourceFilename("/js/app.js", "abc", FingerprintMode.DIRECTORY));
+    assertEquals("abc/app.js",
+        FingerprintMojo.generateTargetResourceFilename("app.js", "abc", FingerprintMode.DIRECTORY));
+  }
+
 }
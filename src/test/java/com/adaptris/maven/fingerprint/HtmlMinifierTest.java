@@ -0,0 +1,81 @@
+package com.adaptris.maven.fingerprint;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class HtmlMinifierTest {
+
+  @Test
+  public void testWhitespaceBetweenTags() {
+    assertEquals("<html><head><title>Title</title></head><body><p>some text</p></body></html>\n",
+        HtmlMinifier.minify("<html>\n  <head>\n    <title>Title</title>\n  </head>\n  <body>\n\t<p>some text</p>"
+            + "\n  </body>\n</html>\n"));
+  }
+
+  @Test
+  public void testWhitespaceNextToText() {
+    assertEquals("<p> some <b>bold</b> text </p>", HtmlMinifier.minify("<p> some <b>bold</b> text </p>"));
+    assertEquals("<p>a < b</p><p>a<b</p>", HtmlMinifier.minify("<p>a < b</p>  <p>a<b</p>"));
+  }
+
+  @Test
+  public void testRawElements() {
+    String pre = "<pre>\n  <b>kept</b>\n  </pre>";
+    assertEquals("<div>" + pre + "</div>", HtmlMinifier.minify("<div>\n" + pre + "\n</div>"));
+    String textarea = "<TEXTAREA name=\"a\">\n  <b>kept</b>  </textarea >";
+    assertEquals("<div>" + textarea + "</div>", HtmlMinifier.minify("<div> " + textarea + " </div>"));
+    String script = "<script>\n  if (a < b && c > d) { x = '</scr' + 'ipt>'; }\n  </script>";
+    assertEquals(script + "<p>", HtmlMinifier.minify(script + "\n<p>"));
+    String style = "<style> p > a { color: red; } </style>";
+    assertEquals(style, HtmlMinifier.minify(style));
+    assertEquals("<script src=\"a.js\"/><p>", HtmlMinifier.minify("<script src=\"a.js\"/>  <p>"));
+  }
+
+  @Test
+  public void testJsp() {
+    assertEquals("<%@ page contentType=\"text/html\" %><!DOCTYPE html><html> <% if (a > b) { %> <% } %> </html>",
+        HtmlMinifier.minify("<%@ page contentType=\"text/html\" %>\n<!DOCTYPE html>\n<html>\n"
+            + "<% if (a > b) { %>  <% } %>\n</html>"));
+    assertEquals("<p>Hello <%= name %> !</p>", HtmlMinifier.minify("<p>Hello <%= name %> !</p>"));
+    assertEquals("<c:if test=\"${a > b}\"><input value=\"<%= a > b %>\" <%= attributes %>></c:if>",
+        HtmlMinifier.minify("<c:if test=\"${a > b}\">\n  <input value=\"<%= a > b %>\" <%= attributes %>>\n</c:if>"));
+  }
+
+  @Test
+  public void testWhitespaceNextToJspExpression() {
+    assertEquals("<span> <%= name %></span>", HtmlMinifier.minify("<span> <%= name %></span>"));
+    assertEquals("<span> <%= first %> <%= last %> </span><%-- comment --%><p>",
+        HtmlMinifier.minify("<span>\n  <%= first %>\n  <%= last %>\n</span>\n<%-- comment --%>\n<p>"));
+    assertEquals("<p> <% out.print(name); %> <b>", HtmlMinifier.minify("<p>\t<% out.print(name); %>\n\n<b>"));
+    assertEquals("<p><%>%></p><p><%%></p>", HtmlMinifier.minify("<p><%>%></p><p><%%></p>"));
+  }
+
+  @Test
+  public void testComments() {
+    String comment = "<!-- <p>  </p> -->";
+    assertEquals("<div>" + comment + "<p></div>", HtmlMinifier.minify("<div> " + comment + " <p> </div>"));
+    assertEquals("<!--[if IE]> <p> <![endif]-->", HtmlMinifier.minify("<!--[if IE]> <p> <![endif]-->"));
+  }
+
+  @Test
+  public void testInputTypeText() {
+    assertEquals("<input name=\"a\"><input name=\"b\" /><INPUT type=\"password\">",
+        HtmlMinifier.minify(
+            "<input type=\"text\" name=\"a\"> <input name=\"b\" TYPE='TEXT' /> <INPUT type=\"password\">"));
+    assertEquals("<p type=\"text\">", HtmlMinifier.minify("<p type=\"text\">"));
+  }
+
+  @Test
+  public void testAppendedInPieces() throws Exception {
+    String html = "<div>\n <pre> a </pre>\n<%-- comment --%>\n<!-- b -->\n <input type=\"text\"> c </div>";
+    StringBuilder output = new StringBuilder();
+    HtmlMinifier minifier = new HtmlMinifier(output);
+    for (int i = 0; i < html.length(); i += 3) {
+      minifier.append(html, i, Math.min(i + 3, html.length()));
+    }
+    minifier.finish();
+    assertEquals(HtmlMinifier.minify(html), output.toString());
+    assertEquals("<div><pre> a </pre><%-- comment --%><!-- b --><input> c </div>", output.toString());
+  }
+}
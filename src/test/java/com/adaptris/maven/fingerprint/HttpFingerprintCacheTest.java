@@ -0,0 +1,120 @@
+package com.adaptris.maven.fingerprint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+public class HttpFingerprintCacheTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  private HttpServer server;
+  private String baseUrl;
+  // stand-in for an artifact store: entries keyed on their path
+  private final Map<String, byte[]> entries = new ConcurrentHashMap<>();
+  private volatile int status;
+
+  @Before
+  public void setUp() throws Exception {
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext("/cache/", this::handle);
+    server.start();
+    baseUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/cache";
+  }
+
+  @After
+  public void tearDown() {
+    server.stop(0);
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    String path = exchange.getRequestURI().getPath();
+    try {
+      if (status != 0) {
+        exchange.sendResponseHeaders(status, -1);
+      } else if ("PUT".equals(exchange.getRequestMethod())) {
+        try (InputStream is = exchange.getRequestBody()) {
+          entries.put(path, IOUtils.toByteArray(is));
+        }
+        exchange.sendResponseHeaders(201, -1);
+      } else {
+        byte[] entry = entries.get(path);
+        if (entry == null) {
+          exchange.sendResponseHeaders(404, -1);
+        } else {
+          exchange.sendResponseHeaders(200, entry.length);
+          try (OutputStream os = exchange.getResponseBody()) {
+            os.write(entry);
+          }
+        }
+      }
+    } finally {
+      exchange.close();
+    }
+  }
+
+  @Test
+  public void testDigests() throws Exception {
+    HttpFingerprintCache cache = new HttpFingerprintCache(baseUrl);
+    assertNull(cache.getDigest("md5/0a1b2c3d-10"));
+    cache.putDigest("md5/0a1b2c3d-10", "9abb8e140aad77637ef4a212935a3ec2");
+    assertEquals("9abb8e140aad77637ef4a212935a3ec2",
+        new String(entries.get("/cache/digests/md5/0a1b2c3d-10"), StandardCharsets.UTF_8));
+    assertEquals("9abb8e140aad77637ef4a212935a3ec2", cache.getDigest("md5/0a1b2c3d-10"));
+  }
+
+  @Test
+  public void testContents() throws Exception {
+    File directory = new File(new File(getClass().getResource("/utils/utilsTestFile.txt").toURI()).getParentFile(),
+        "http-fingerprint-cache");
+    FileUtils.deleteDirectory(directory);
+    File source = new File(directory, "source.css");
+    FileUtils.writeStringToFile(source, "body{color:red}", StandardCharsets.UTF_8);
+    File target = new File(directory, "target/target.css");
+    HttpFingerprintCache cache = new HttpFingerprintCache(baseUrl + "/");
+    assertFalse(cache.getContent("minified/0a1b.css", target));
+    assertFalse(target.exists());
+    cache.putContent("minified/0a1b.css", source);
+    assertTrue(cache.getContent("minified/0a1b.css", target));
+    assertEquals("body{color:red}", FileUtils.readFileToString(target, StandardCharsets.UTF_8));
+    assertEquals(1, target.getParentFile().list().length);
+  }
+
+  @Test
+  public void testServerError() throws Exception {
+    status = 503;
+    thrown.expect(IOException.class);
+    thrown.expectMessage("unexpected status 503 for: " + baseUrl + "/digests/md5/0a1b2c3d-10");
+    new HttpFingerprintCache(baseUrl).getDigest("md5/0a1b2c3d-10");
+  }
+
+  @Test
+  public void testCreate() throws Exception {
+    assertTrue(FingerprintCache.create(baseUrl) instanceof HttpFingerprintCache);
+    assertTrue(FingerprintCache.create(" HTTPS://cache.example.com/fingerprint") instanceof HttpFingerprintCache);
+    assertTrue(FingerprintCache.create("target/fingerprint-cache") instanceof DirectoryFingerprintCache);
+  }
+}
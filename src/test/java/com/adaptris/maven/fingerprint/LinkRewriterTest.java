@@ -0,0 +1,239 @@
+package com.adaptris.maven.fingerprint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class LinkRewriterTest {
+
+  private static final List<Pattern> DEFAULT_PATTERNS = Arrays.asList(FingerprintMojo.LINK_PATTERN,
+      FingerprintMojo.SCRIPT_PATTERN, FingerprintMojo.IMG_PATTERN, FingerprintMojo.CSS_IMG_PATTERN,
+      FingerprintMojo.JSTL_URL_PATTERN, FingerprintMojo.FROM_URL_PATTERN);
+
+  private static final LinkRewriter.LinkHandler FINGERPRINT = link -> link.startsWith("//") ? link : link + "?fp";
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Test
+  public void testRewriteSameAsOnePassPerPattern() throws Exception {
+    LinkRewriter rewriter = new LinkRewriter(DEFAULT_PATTERNS);
+    for (File file : FileUtils.listFiles(new File("src/test/resources/to-parse"), new String[] { "html", "css", "js" },
+        true)) {
+      String data = Utils.readFile(file);
+      assertEquals(file.getPath(), rewriteOnePassPerPattern(data), rewriter.rewrite(data, FINGERPRINT).toString());
+    }
+  }
+
+  @Test
+  public void testRewriteInsideMatchSameAsOnePassPerPattern() throws Exception {
+    LinkRewriter rewriter = new LinkRewriter(DEFAULT_PATTERNS);
+    // a link in the match of another pattern, before its url, and a pattern matching again inside its own match
+    StringBuilder pages = new StringBuilder();
+    for (String data : Arrays.asList("<img style=\"background:url('/img/bg.png')\" src=\"/img/a.png\">",
+        "<link data-main=\"/js/main.js\" href=\"/css/a.css\">", "\"a.js\"b.js\"",
+        "<link href=\"/css/a.css\" data-main=\"/js/main.js\"><img src=\"a.png\" data-src=\"b.js\">")) {
+      assertEquals(data, rewriteOnePassPerPattern(data), rewriter.rewrite(data, FINGERPRINT).toString());
+      for (int i = 0; i < 20; i++) {
+        pages.append(data).append('\n');
+      }
+    }
+    StringBuilder output = new StringBuilder();
+    // longer than any match, much shorter than the pages
+    rewriter.rewriteTo(new StringReader(pages.toString()), 100, FINGERPRINT, output, null);
+    assertEquals(rewriteOnePassPerPattern(pages.toString()), output.toString());
+  }
+
+  @Test
+  public void testRewriteTo() throws Exception {
+    LinkRewriter rewriter = new LinkRewriter(DEFAULT_PATTERNS);
+    for (String data : Arrays.asList("<link href=\"a.css\">  <img src=\"b.png\">", "no link")) {
+      StringBuilder output = new StringBuilder("before ");
+      rewriter.rewriteTo(data, FINGERPRINT, output);
+      assertEquals("before " + rewriter.rewrite(data, FINGERPRINT), output.toString());
+    }
+  }
+
+  @Test
+  public void testRewriteToStatistics() throws Exception {
+    LinkRewriter rewriter = new LinkRewriter(DEFAULT_PATTERNS);
+    LinkRewriter.Statistics statistics = new LinkRewriter.Statistics(rewriter);
+    rewriter.rewriteTo("<link href=\"a.css\"> <link href=\"b.css\"> <img src=\"c.png\">", FINGERPRINT,
+        new StringBuilder(), statistics);
+    List<Pattern> patterns = rewriter.getPatterns();
+    assertEquals(2, statistics.getLinks(patterns.indexOf(FingerprintMojo.LINK_PATTERN)));
+    assertEquals(1, statistics.getLinks(patterns.indexOf(FingerprintMojo.IMG_PATTERN)));
+    assertEquals(0, statistics.getLinks(patterns.indexOf(FingerprintMojo.CSS_IMG_PATTERN)));
+  }
+
+  @Test
+  public void testRewriteToStatisticsNotTimed() throws Exception {
+    LinkRewriter rewriter = new LinkRewriter(DEFAULT_PATTERNS);
+    LinkRewriter.Statistics statistics = new LinkRewriter.Statistics(rewriter, false);
+    StringBuilder data = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      data.append("<link href=\"a.css\"> <img src=\"c.png\">");
+    }
+    rewriter.rewriteTo(data, FINGERPRINT, new StringBuilder(), statistics);
+    List<Pattern> patterns = rewriter.getPatterns();
+    assertEquals(1000, statistics.getLinks(patterns.indexOf(FingerprintMojo.LINK_PATTERN)));
+    assertEquals(1000, statistics.getLinks(patterns.indexOf(FingerprintMojo.IMG_PATTERN)));
+    for (int i = 0; i < patterns.size(); i++) {
+      assertEquals(0, statistics.getNanos(i));
+    }
+  }
+
+  @Test
+  public void testRewriteToReaderSameAsWhole() throws Exception {
+    LinkRewriter rewriter = new LinkRewriter(DEFAULT_PATTERNS);
+    StringBuilder pages = new StringBuilder();
+    for (File file : FileUtils.listFiles(new File("src/test/resources/to-parse"), new String[] { "html", "css", "js" },
+        true)) {
+      pages.append(Utils.readFile(file));
+    }
+    String expected = rewriter.rewrite(pages, FINGERPRINT).toString();
+    // from about the longest match of the pages, so that the buffer slides many times
+    for (int window : new int[] { 60, 200, 1000, 100000 }) {
+      StringBuilder output = new StringBuilder();
+      rewriter.rewriteTo(new StringReader(pages.toString()), window, FINGERPRINT, output, null);
+      assertEquals("window " + window, expected, output.toString());
+    }
+  }
+
+  @Test
+  public void testRewriteToReaderStatistics() throws Exception {
+    LinkRewriter rewriter = new LinkRewriter(DEFAULT_PATTERNS);
+    LinkRewriter.Statistics statistics = new LinkRewriter.Statistics(rewriter);
+    List<String> links = new ArrayList<>();
+    // links across the boundaries of the buffer
+    String data = "<img src=\"a.png\"> <link href=\"b.css\"> url('c.png')\n";
+    StringBuilder repeated = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      repeated.append(data);
+    }
+    rewriter.rewriteTo(new StringReader(repeated.toString()), 37, link -> {
+      links.add(link);
+      return link;
+    }, null, statistics);
+    assertEquals(3000, links.size());
+    assertEquals(Arrays.asList("a.png", "b.css", "c.png"), links.subList(2997, 3000));
+    List<Pattern> patterns = rewriter.getPatterns();
+    assertEquals(1000, statistics.getLinks(patterns.indexOf(FingerprintMojo.IMG_PATTERN)));
+  }
+
+  @Test
+  public void testRewriteToReaderLongerThanWindow() throws Exception {
+    LinkRewriter rewriter = new LinkRewriter(DEFAULT_PATTERNS);
+    StringBuilder output = new StringBuilder();
+    String data = "<link rel=\"stylesheet\" href=\"a.css\">";
+    rewriter.rewriteTo(new StringReader(data), 8, FINGERPRINT, output, null);
+    // the match doesn't fit in the window
+    assertEquals(data, output.toString());
+    output.setLength(0);
+    rewriter.rewriteTo(new StringReader(data), data.length(), FINGERPRINT, output, null);
+    assertEquals("<link rel=\"stylesheet\" href=\"a.css?fp\">", output.toString());
+  }
+
+  @Test
+  public void testRewriteToReaderInvalidWindow() throws Exception {
+    thrown.expect(MojoExecutionException.class);
+    thrown.expectMessage("window should be at least one char: 0");
+    new LinkRewriter(DEFAULT_PATTERNS).rewriteTo(new StringReader("url('a.png')"), 0, FINGERPRINT, null, null);
+  }
+
+  @Test
+  public void testRewriteUnchanged() throws Exception {
+    LinkRewriter rewriter = new LinkRewriter(DEFAULT_PATTERNS);
+    String data = "<div>nothing to see</div><link href=\"//cdn/style.css\">";
+    assertSame(data, rewriter.rewrite(data, FINGERPRINT));
+  }
+
+  @Test
+  public void testRewriteOverlappingPatternsOnce() throws Exception {
+    LinkRewriter rewriter = new LinkRewriter(DEFAULT_PATTERNS);
+    assertEquals("<c:url value=\"/js/a.js?fp\"/>", rewriter.rewrite("<c:url value=\"/js/a.js\"/>", FINGERPRINT)
+        .toString());
+    assertEquals("<link href=\"a.js?fp\">", rewriter.rewrite("<link href=\"a.js\">", FINGERPRINT).toString());
+  }
+
+  @Test
+  public void testRewriteLinkAfterUrl() throws Exception {
+    LinkRewriter rewriter = new LinkRewriter(DEFAULT_PATTERNS);
+    assertEquals("<img src=\"a.png?fp\" data-src=\"b.js?fp\">",
+        rewriter.rewrite("<img src=\"a.png\" data-src=\"b.js\">", FINGERPRINT).toString());
+  }
+
+  @Test
+  public void testRewriteCustomPatterns() throws Exception {
+    Pattern custom = Pattern.compile("(customUrl:\\s*[\",'])(.*?)([\",'])");
+    // no literal prefix and a back reference
+    Pattern quoted = Pattern.compile("([\"'])([^\"'\\s]*?\\.png)(\\1)");
+    LinkRewriter rewriter = new LinkRewriter(Arrays.asList(FingerprintMojo.SCRIPT_PATTERN, custom, quoted));
+    assertEquals("var a = { customUrl: 'a.css?fp', b: \"b.js?fp\" };",
+        rewriter.rewrite("var a = { customUrl: 'a.css', b: \"b.js\" };", FINGERPRINT).toString());
+    assertEquals("load('c.png?fp'); load(\"d.png?fp\"); load('e.png\");",
+        rewriter.rewrite("load('c.png'); load(\"d.png\"); load('e.png\");", FINGERPRINT).toString());
+  }
+
+  @Test
+  public void testLiteralPrefix() {
+    assertEquals("<link", LinkRewriter.literalPrefix(FingerprintMojo.LINK_PATTERN));
+    assertEquals("\"", LinkRewriter.literalPrefix(FingerprintMojo.SCRIPT_PATTERN));
+    assertEquals("<img", LinkRewriter.literalPrefix(FingerprintMojo.IMG_PATTERN));
+    assertEquals("url(", LinkRewriter.literalPrefix(FingerprintMojo.CSS_IMG_PATTERN));
+    assertEquals("<c:url", LinkRewriter.literalPrefix(FingerprintMojo.JSTL_URL_PATTERN));
+    assertEquals("fromUrl:", LinkRewriter.literalPrefix(FingerprintMojo.FROM_URL_PATTERN));
+    assertEquals("ab", LinkRewriter.literalPrefix(Pattern.compile("(ab)c?(d)(e)")));
+    assertEquals("a", LinkRewriter.literalPrefix(Pattern.compile("(a)(bc)?(d)")));
+    assertEquals("a\\", LinkRewriter.literalPrefix(Pattern.compile("(a\\\\)(\\d)(b)")));
+    assertEquals("", LinkRewriter.literalPrefix(Pattern.compile("(abc.*)(d)(e)|(f)")));
+    assertEquals("a", LinkRewriter.literalPrefix(Pattern.compile("(a(bc|de))(d)(e)")));
+    assertEquals("ab", LinkRewriter.literalPrefix(Pattern.compile("(ab[|])(d)(e)")));
+    assertEquals("", LinkRewriter.literalPrefix(Pattern.compile("(ab)(d)(e)", Pattern.CASE_INSENSITIVE)));
+    assertEquals("", LinkRewriter.literalPrefix(Pattern.compile("(?i)(ab)(d)(e)")));
+  }
+
+  @Test
+  public void testRewriteDollarSign() throws Exception {
+    LinkRewriter rewriter = new LinkRewriter(DEFAULT_PATTERNS);
+    String data = "<link href=\"${ctx}/a.css\">";
+    assertSame(data, rewriter.rewrite(data, link -> link));
+    assertEquals("<link href=\"${ctx}/a.css?fp\">", rewriter.rewrite(data, FINGERPRINT).toString());
+  }
+
+  @Test
+  public void testPatternWithoutUrlGroup() throws Exception {
+    thrown.expect(MojoExecutionException.class);
+    thrown.expectMessage("pattern should have at least 2 groups");
+
+    new LinkRewriter(Arrays.asList(Pattern.compile("(url)")));
+  }
+
+  private static String rewriteOnePassPerPattern(String data) throws MojoExecutionException {
+    String output = data;
+    for (Pattern pattern : DEFAULT_PATTERNS) {
+      StringBuffer buffer = new StringBuffer();
+      Matcher m = pattern.matcher(output);
+      while (m.find()) {
+        m.appendReplacement(buffer,
+            Matcher.quoteReplacement(m.group(1) + FINGERPRINT.handle(m.group(2)) + m.group(3)));
+      }
+      m.appendTail(buffer);
+      output = buffer.toString();
+    }
+    return output;
+  }
+}
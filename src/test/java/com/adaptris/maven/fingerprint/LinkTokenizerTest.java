@@ -0,0 +1,162 @@
+package com.adaptris.maven.fingerprint;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+public class LinkTokenizerTest {
+
+  private static final List<Pattern> DEFAULT_PATTERNS = Arrays.asList(FingerprintMojo.LINK_PATTERN,
+      FingerprintMojo.SCRIPT_PATTERN, FingerprintMojo.IMG_PATTERN, FingerprintMojo.CSS_IMG_PATTERN,
+      FingerprintMojo.JSTL_URL_PATTERN, FingerprintMojo.FROM_URL_PATTERN);
+
+  // pieces of the default patterns, so that random data is made of partial and overlapping links
+  private static final String[] TOKENS = { "<link", "<img", "<c:url", "url(", "fromUrl:", " href=\"", "src=\"",
+      " value=\"", "\"", "'", ",", ")", ">", "{", "}", "/", ".", "..", "a", ".js", "b.css", " ", "\t", "\n", "\r",
+      "\u2028" };
+
+  private static final LinkRewriter.LinkHandler MARK = link -> "[" + link + "]";
+
+  @Test
+  public void testSameAsRegex() throws Exception {
+    LinkRewriter tokenizers = new LinkRewriter(DEFAULT_PATTERNS);
+    LinkRewriter regex = new LinkRewriter(DEFAULT_PATTERNS, false);
+    Random random = new Random(7);
+    for (int i = 0; i < 20000; i++) {
+      StringBuilder data = new StringBuilder();
+      for (int j = random.nextInt(30); j > 0; j--) {
+        data.append(TOKENS[random.nextInt(TOKENS.length)]);
+      }
+      assertEquals(data.toString(), regex.rewrite(data, MARK).toString(), tokenizers.rewrite(data, MARK).toString());
+    }
+  }
+
+  @Test
+  public void testSameAsRegexOnPages() throws Exception {
+    LinkRewriter tokenizers = new LinkRewriter(DEFAULT_PATTERNS);
+    LinkRewriter regex = new LinkRewriter(DEFAULT_PATTERNS, false);
+    for (File file : FileUtils.listFiles(new File("src/test/resources/to-parse"), new String[] { "html", "css", "js" },
+        true)) {
+      String data = Utils.readFile(file);
+      assertEquals(file.getPath(), regex.rewrite(data, MARK).toString(), tokenizers.rewrite(data, MARK).toString());
+    }
+  }
+
+  @Test
+  public void testDefaultPatterns() throws Exception {
+    LinkRewriter rewriter = new LinkRewriter(DEFAULT_PATTERNS);
+    assertEquals("<link rel=\"stylesheet\" href=\"[css/a.css]\"/>",
+        rewriter.rewrite("<link rel=\"stylesheet\" href=\"css/a.css\"/>", MARK).toString());
+    // the url may span lines, not the end of the tag
+    assertEquals("<img alt=\"\" src=\"[a\nb.png]\">", rewriter.rewrite("<img alt=\"\" src=\"a\nb.png\">", MARK)
+        .toString());
+    assertEquals("<img src=\"{a}\" src=\"[b.png]\">", rewriter.rewrite("<img src=\"{a}\" src=\"b.png\">", MARK)
+        .toString());
+    assertEquals("<c:url value=\"${a}\" value=\"[/b.png]\"/>",
+        rewriter.rewrite("<c:url value=\"${a}\" value=\"/b.png\"/>", MARK).toString());
+    assertEquals("background: url('[a.png]')", rewriter.rewrite("background: url('a.png')", MARK).toString());
+    assertEquals("fromUrl:\n '[a.html]'", rewriter.rewrite("fromUrl:\n 'a.html'", MARK).toString());
+    assertEquals("\"[a.js]\" \"a js\"", rewriter.rewrite("\"a.js\" \"a js\"", MARK).toString());
+    // no closing > on the line
+    assertEquals("<link href=\"a.css\"\n>", rewriter.rewrite("<link href=\"a.css\"\n>", MARK).toString());
+  }
+
+  @Test
+  public void testCustomPatternThroughRegex() throws Exception {
+    LinkRewriter rewriter = new LinkRewriter(Arrays.asList(FingerprintMojo.LINK_PATTERN,
+        Pattern.compile("(data-src=\")(.*?)(\")")));
+    assertEquals("<div data-src=\"[a.png]\"><link href=\"[b.css]\">",
+        rewriter.rewrite("<div data-src=\"a.png\"><link href=\"b.css\">", MARK).toString());
+  }
+
+  @Test
+  public void testLinearOnSingleLine() throws Exception {
+    LinkRewriter rewriter = new LinkRewriter(DEFAULT_PATTERNS);
+    // each tag would make the regular expressions scan the rest of the line
+    for (String tag : Arrays.asList("<link ", "<img ", "<c:url ", "url(\"", "<img src=\"{", "<link href=\"a")) {
+      StringBuilder line = new StringBuilder();
+      while (line.length() < 256 * 1024) {
+        line.append(tag);
+      }
+      // a few reads per char, however many links start on the line
+      CountingChars data = new CountingChars(line, 16L * line.length());
+      assertEquals(tag, line.toString(), rewriter.rewrite(data, MARK).toString());
+    }
+  }
+
+  /**
+   * Fails once more chars than the limit have been read, the work done by the tokenizers being counted rather than
+   * timed, whatever the speed of the machine.
+   */
+  private static class CountingChars implements CharSequence {
+    private final CharSequence data;
+    private final long limit;
+    private long reads;
+
+    CountingChars(CharSequence data, long limit) {
+      this.data = data;
+      this.limit = limit;
+    }
+
+    private void read(long count) {
+      reads += count;
+      if (reads > limit) {
+        throw new AssertionError("more than " + limit + " chars read from " + data.length());
+      }
+    }
+
+    @Override
+    public char charAt(int index) {
+      read(1);
+      return data.charAt(index);
+    }
+
+    @Override
+    public int length() {
+      return data.length();
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+      read(end - start);
+      return data.subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+      read(data.length());
+      return data.toString();
+    }
+  }
+
+  @Test
+  public void testCursor() {
+    String data = "a-b--c";
+    LinkTokenizer.Cursor letters = new LinkTokenizer.Cursor(data, i -> data.charAt(i) != '-');
+    assertEquals(0, letters.next(0));
+    assertEquals(2, letters.next(1));
+    assertEquals(2, letters.next(2));
+    assertEquals(5, letters.next(3));
+    // before what is known
+    assertEquals(0, letters.next(0));
+    assertEquals(5, letters.next(4));
+    assertEquals(-1, letters.next(6));
+    assertEquals(6, letters.nextOrEnd(6));
+    assertEquals(2, letters.next(1));
+    LinkTokenizer.Cursor none = new LinkTokenizer.Cursor(data, i -> false);
+    assertEquals(-1, none.next(3));
+    assertEquals(-1, none.next(0));
+    assertEquals(-1, none.next(4));
+    LinkTokenizer.Cursor dashes = new LinkTokenizer.Cursor(data, '-', null);
+    assertEquals(1, dashes.next(0));
+    assertEquals(3, dashes.next(2));
+    assertEquals(-1, dashes.next(5));
+  }
+}
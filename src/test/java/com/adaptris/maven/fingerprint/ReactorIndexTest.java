@@ -0,0 +1,103 @@
+package com.adaptris.maven.fingerprint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.DefaultMavenExecutionResult;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ReactorIndexTest {
+
+  private File file;
+
+  @Before
+  public void setUp() throws Exception {
+    file = new File(new File(getClass().getResource("/utils/utilsTestFile.txt").toURI()).getParentFile(),
+        "reactor-index/asset.css");
+    FileUtils.writeStringToFile(file, "body{color:red}", StandardCharsets.UTF_8);
+    file.setLastModified(1000000000L);
+  }
+
+  static MavenSession newSession() {
+    return new MavenSession(null, null, new DefaultMavenExecutionRequest(), new DefaultMavenExecutionResult());
+  }
+
+  @Test
+  public void testGet() {
+    MavenSession session = newSession();
+    assertSame(ReactorIndex.get(session), ReactorIndex.get(session));
+    // each module is given a copy of the session
+    assertSame(ReactorIndex.get(session), ReactorIndex.get(session.clone()));
+    assertNotSame(ReactorIndex.get(session), ReactorIndex.get(newSession()));
+  }
+
+  @Test
+  public void testComputedOnce() throws Exception {
+    ReactorIndex index = new ReactorIndex();
+    AtomicInteger computations = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<String>> futures = new ArrayList<>();
+      // the modules of a parallel build
+      for (int i = 0; i < 100; i++) {
+        futures.add(executor.submit(() -> index.digest("MD5:" + file.getCanonicalPath(), file, () -> {
+          computations.incrementAndGet();
+          Thread.sleep(10);
+          return "digest";
+        })));
+      }
+      for (Future<String> future : futures) {
+        assertEquals("digest", future.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(1, computations.get());
+    assertEquals("digest", index.digest("MD5:" + file.getCanonicalPath(), file, () -> "other"));
+    // another algorithm
+    assertEquals("other", index.digest("SHA256:" + file.getCanonicalPath(), file, () -> "other"));
+    assertEquals(2, index.size());
+  }
+
+  @Test
+  public void testChanged() throws Exception {
+    ReactorIndex index = new ReactorIndex();
+    assertEquals("digest", index.digest("MD5:" + file.getCanonicalPath(), file, () -> "digest"));
+    file.setLastModified(2000000000L);
+    assertEquals("changed", index.digest("MD5:" + file.getCanonicalPath(), file, () -> "changed"));
+    assertEquals("changed", index.digest("MD5:" + file.getCanonicalPath(), file, () -> "digest"));
+    assertEquals(1, index.size());
+  }
+
+  @Test
+  public void testFailed() throws Exception {
+    ReactorIndex index = new ReactorIndex();
+    try {
+      index.digest("MD5:" + file.getCanonicalPath(), file, () -> {
+        throw new MojoExecutionException("unable to read");
+      });
+      fail();
+    } catch (MojoExecutionException expected) {
+      assertEquals("unable to read", expected.getMessage());
+    }
+    assertEquals(0, index.size());
+    // computed again
+    assertEquals("digest", index.digest("MD5:" + file.getCanonicalPath(), file, () -> "digest"));
+  }
+}
@@ -0,0 +1,99 @@
+package com.adaptris.maven.fingerprint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ReferenceGraphTest {
+
+  private static final File PAGE = new File("page.html");
+  private static final File CSS = new File("style.css");
+  private static final File SCRIPT = new File("script.js");
+  private static final File COMPONENT = new File("component.js");
+
+  @Test
+  public void testLevels() {
+    ReferenceGraph graph = new ReferenceGraph();
+    graph.add("page.html", PAGE);
+    graph.add("style.css", CSS);
+    graph.add("script.js", SCRIPT);
+    graph.add("component.js", COMPONENT);
+    graph.addReferences("page.html", Arrays.asList("style.css", "script.js", "image.png"));
+    graph.addReferences("style.css", Arrays.asList("image.png"));
+    graph.addReferences("script.js", Arrays.asList("component.js"));
+
+    List<List<File>> levels = graph.levels();
+    assertEquals(3, levels.size());
+    assertEquals(Arrays.asList(CSS, COMPONENT), levels.get(0));
+    assertEquals(Arrays.asList(SCRIPT), levels.get(1));
+    assertEquals(Arrays.asList(PAGE), levels.get(2));
+    assertTrue(graph.getUnordered().isEmpty());
+    assertTrue(graph.isOrdered("style.css"));
+    // not processed
+    assertFalse(graph.contains("image.png"));
+    assertFalse(graph.isOrdered("image.png"));
+    assertEquals(CSS, graph.getFile("style.css"));
+    assertNull(graph.getFile("image.png"));
+  }
+
+  @Test
+  public void testCycle() {
+    ReferenceGraph graph = new ReferenceGraph();
+    graph.add("page.html", PAGE);
+    graph.add("style.css", CSS);
+    graph.add("script.js", SCRIPT);
+    graph.add("component.js", COMPONENT);
+    graph.addReferences("page.html", Arrays.asList("script.js"));
+    graph.addReferences("script.js", Arrays.asList("component.js"));
+    graph.addReferences("component.js", Arrays.asList("script.js"));
+
+    List<List<File>> levels = graph.levels();
+    assertEquals(2, levels.size());
+    assertEquals(Arrays.asList(CSS), levels.get(0));
+    // the page can't be fingerprinted before the cycle it references
+    assertEquals(Arrays.asList(PAGE, SCRIPT, COMPONENT), levels.get(1));
+    assertEquals(new HashSet<>(Arrays.asList("page.html", "script.js", "component.js")), graph.getUnordered());
+    assertTrue(graph.isOrdered("style.css"));
+    assertFalse(graph.isOrdered("script.js"));
+  }
+
+  @Test
+  public void testSelfReference() {
+    ReferenceGraph graph = new ReferenceGraph();
+    graph.add("page.html", PAGE);
+    graph.addReferences("page.html", Collections.singletonList("page.html"));
+
+    assertEquals(Collections.singletonList(Collections.singletonList(PAGE)), graph.levels());
+    assertFalse(graph.isOrdered("page.html"));
+  }
+
+  @Test
+  public void testGetReferencing() {
+    ReferenceGraph graph = new ReferenceGraph();
+    graph.add("page.html", PAGE);
+    graph.add("style.css", CSS);
+    graph.add("script.js", SCRIPT);
+    graph.addReferences("page.html", Arrays.asList("style.css", "script.js"));
+    graph.addReferences("style.css", Arrays.asList("image.png"));
+
+    // through the css
+    assertEquals(new HashSet<>(Arrays.asList("style.css", "page.html")),
+        graph.getReferencing(Collections.singletonList("image.png")));
+    assertEquals(Collections.singleton("page.html"), graph.getReferencing(Collections.singletonList("script.js")));
+    assertTrue(graph.getReferencing(Collections.singletonList("page.html")).isEmpty());
+
+    graph.setReferences("style.css", Arrays.asList("other.png"));
+    assertTrue(graph.getReferencing(Collections.singletonList("image.png")).isEmpty());
+    assertEquals(new HashSet<>(Arrays.asList("style.css", "page.html")),
+        graph.getReferencing(Collections.singletonList("other.png")));
+  }
+}
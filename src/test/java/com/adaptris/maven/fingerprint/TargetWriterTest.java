@@ -0,0 +1,134 @@
+package com.adaptris.maven.fingerprint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TargetWriterTest {
+
+  private File file;
+  private long lastModified;
+
+  @Before
+  public void setUp() throws Exception {
+    file = new File("target/test-classes/targetWriter/file.txt");
+    FileUtils.deleteDirectory(file.getParentFile());
+  }
+
+  @Test
+  public void testWrite() throws Exception {
+    // the parent directory is created
+    assertTrue(write("aé", false));
+    assertEquals("aé", read());
+    assertTrue(write("b", false));
+    assertEquals("b", read());
+  }
+
+  @Test
+  public void testUnchanged() throws Exception {
+    String content = content(200000);
+    assertTrue(write(content, true));
+    touch();
+    assertFalse(write(content, true));
+    assertEquals(lastModified, file.lastModified());
+  }
+
+  @Test
+  public void testChangedFromTheMiddle() throws Exception {
+    String content = content(200000);
+    write(content, true);
+    touch();
+    String changed = content.substring(0, 100000) + "changed" + content.substring(100007);
+    assertTrue(write(changed, true));
+    assertEquals(changed, read());
+    assertFalse(lastModified == file.lastModified());
+  }
+
+  @Test
+  public void testShorterAndLonger() throws Exception {
+    String content = content(100000);
+    write(content, true);
+    assertTrue(write(content.substring(0, 70000), true));
+    assertEquals(content.substring(0, 70000), read());
+    assertTrue(write(content, true));
+    assertEquals(content, read());
+  }
+
+  @Test
+  public void testSurrogatePairBetweenBuffers() throws Exception {
+    StringBuilder content = new StringBuilder();
+    for (int i = 0; i < 64 * 1024 - 1; i++) {
+      content.append('a');
+    }
+    content.append("😀 end");
+    try (TargetWriter writer = new TargetWriter(file, false)) {
+      // appended in pieces, the pair being split
+      writer.append(content, 0, 64 * 1024);
+      writer.append(CharBuffer.wrap(content), 64 * 1024, content.length());
+      writer.finish();
+    }
+    assertEquals(content.toString(), read());
+  }
+
+  @Test
+  public void testNotFinished() throws Exception {
+    String content = content(200000);
+    write(content, true);
+    touch();
+    // failed while the content is still the same
+    try (TargetWriter writer = new TargetWriter(file, true)) {
+      writer.append(content, 0, 100000);
+    }
+    assertEquals(content, read());
+    assertEquals(lastModified, file.lastModified());
+
+    // failed once the file is partially written
+    try (TargetWriter writer = new TargetWriter(file, true)) {
+      writer.append("changed").append(content, 7, 100000);
+    }
+    assertFalse(file.exists());
+
+    try (TargetWriter writer = new TargetWriter(file, false)) {
+      writer.append(content, 0, 100000);
+    }
+    assertFalse(file.exists());
+  }
+
+  private boolean write(CharSequence content, boolean skipUnchanged) throws Exception {
+    TargetWriter writer = new TargetWriter(file, skipUnchanged);
+    try {
+      for (int i = 0; i < content.length(); i += 1000) {
+        writer.append(content, i, Math.min(content.length(), i + 1000));
+      }
+      writer.finish();
+    } finally {
+      writer.close();
+    }
+    return writer.isWritten();
+  }
+
+  private void touch() {
+    lastModified = file.lastModified() - 10000;
+    file.setLastModified(lastModified);
+  }
+
+  private String read() throws Exception {
+    return FileUtils.readFileToString(file, StandardCharsets.UTF_8);
+  }
+
+  private static String content(int length) {
+    StringBuilder content = new StringBuilder(length);
+    while (content.length() < length) {
+      content.append("<p>café ").append(content.length()).append("</p>\n");
+    }
+    return content.substring(0, length);
+  }
+}
@@ -7,23 +7,39 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+import java.util.zip.GZIPInputStream;
 
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.codec.digest.PureJavaCrc32C;
+import org.apache.commons.codec.digest.XXHash32;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
 
 public class UtilsTest {
 
   @Rule
   public ExpectedException thrown = ExpectedException.none();
 
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
   @Test
   public void testGenerateMd5FingerprintNullSourceFile() throws MojoExecutionException {
     thrown.expect(MojoExecutionException.class);
@@ -47,6 +63,73 @@ public class UtilsTest {
     assertEquals("7d6316068167e995d1bc10b0abe78071", m5Fingerprint);
   }
 
+  @Test
+  public void testGenerateMd5FingerprintNormalizesEol() throws Exception {
+    File lf = new File(folder.getRoot(), "eolLf.js");
+    File crlf = new File(folder.getRoot(), "eolCrLf.js");
+    File cr = new File(folder.getRoot(), "eolCr.js");
+    FileUtils.writeStringToFile(lf, "var a = 1;\nvar b = 'é';\n\n", StandardCharsets.UTF_8);
+    FileUtils.writeStringToFile(crlf, "var a = 1;\r\nvar b = 'é';\r\n\r\n", StandardCharsets.UTF_8);
+    FileUtils.writeStringToFile(cr, "var a = 1;\rvar b = 'é';\r\r", StandardCharsets.UTF_8);
+
+    String expected = DigestUtils.md5Hex("var a = 1;\nvar b = 'é';\n\n".getBytes(StandardCharsets.UTF_8));
+    assertEquals(expected, Utils.generateMd5Fingerprint(lf));
+    assertEquals(expected, Utils.generateMd5Fingerprint(crlf));
+    assertEquals(expected, Utils.generateMd5Fingerprint(cr));
+  }
+
+  @Test
+  public void testGenerateMd5FingerprintBinaryFile() throws Exception {
+    File binary = new File(folder.getRoot(), "binary.png");
+    byte[] content = new byte[] { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n', (byte) 0xff, '\r' };
+    FileUtils.writeByteArrayToFile(binary, content);
+
+    assertEquals(DigestUtils.md5Hex(content), Utils.generateMd5Fingerprint(binary));
+  }
+
+  @Test
+  public void testGenerateFingerprint() throws Exception {
+    File binary = new File(folder.getRoot(), "binary.png");
+    byte[] content = new byte[] { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n', (byte) 0xff, '\r' };
+    FileUtils.writeByteArrayToFile(binary, content);
+
+    assertEquals(DigestUtils.md5Hex(content), Utils.generateFingerprint(binary, HashAlgorithm.MD5));
+    assertEquals(DigestUtils.sha1Hex(content), Utils.generateFingerprint(binary, HashAlgorithm.SHA1));
+    assertEquals(DigestUtils.sha256Hex(content), Utils.generateFingerprint(binary, HashAlgorithm.SHA256));
+    assertEquals(DigestUtils.sha512Hex(content), Utils.generateFingerprint(binary, HashAlgorithm.SHA512));
+    assertEquals(checksum(new CRC32(), content), Utils.generateFingerprint(binary, HashAlgorithm.CRC32));
+    assertEquals(checksum(new PureJavaCrc32C(), content), Utils.generateFingerprint(binary, HashAlgorithm.CRC32C));
+    assertEquals(checksum(new XXHash32(), content), Utils.generateFingerprint(binary, HashAlgorithm.XXHASH32));
+  }
+
+  @Test
+  public void testGenerateFingerprintNormalizesEol() throws Exception {
+    File dir = new File(getClass().getResource("/utils/utilsTestFile.txt").toURI()).getParentFile();
+    File crlf = new File(dir, "eolCrLf.css");
+    FileUtils.writeStringToFile(crlf, "a {}\r\nb {}\r\n", StandardCharsets.UTF_8);
+
+    byte[] lf = "a {}\nb {}\n".getBytes(StandardCharsets.UTF_8);
+    assertEquals(checksum(new XXHash32(), lf), Utils.generateFingerprint(crlf, HashAlgorithm.XXHASH32));
+    assertEquals(DigestUtils.sha256Hex(lf), Utils.generateFingerprint(crlf, HashAlgorithm.SHA256));
+  }
+
+  @Test
+  public void testParseHashAlgorithm() throws MojoExecutionException {
+    assertEquals(HashAlgorithm.SHA256, HashAlgorithm.parse("SHA-256"));
+    assertEquals(HashAlgorithm.SHA256, HashAlgorithm.parse("sha256"));
+    assertEquals(HashAlgorithm.XXHASH32, HashAlgorithm.parse("xxHash32"));
+    assertEquals(HashAlgorithm.CRC32C, HashAlgorithm.parse(" crc32c "));
+
+    thrown.expect(MojoExecutionException.class);
+    thrown.expectMessage("unknown hash algorithm: sha3");
+    HashAlgorithm.parse("sha3");
+  }
+
+  private static String checksum(Checksum checksum, byte[] content) {
+    checksum.update(content, 0, content.length);
+    return String.format("%08x", checksum.getValue());
+  }
+
   @Test
   public void testReadFileNullSourceFile() throws MojoExecutionException {
     thrown.expect(MojoExecutionException.class);
@@ -72,6 +155,39 @@ public class UtilsTest {
     assertTrue(fileContent.contains("Second Line"));
   }
 
+  @Test
+  public void testReadCharsFileDoesntExist() throws MojoExecutionException {
+    thrown.expect(MojoExecutionException.class);
+    thrown.expectMessage("unable to read file: ");
+
+    Utils.readChars(new File("test.txt"));
+  }
+
+  @Test
+  public void testReadChars() throws Exception {
+    File file = new File(new File(getClass().getResource("/utils/utilsTestFile.txt").toURI()).getParentFile(),
+        "readChars.txt");
+    FileUtils.writeStringToFile(file, "caf\u00e9 \ud83d\ude00", StandardCharsets.UTF_8);
+    assertEquals("caf\u00e9 \ud83d\ude00", Utils.readChars(file).toString());
+
+    // mapped in memory
+    StringBuilder large = new StringBuilder();
+    while (large.length() < 2 * 1024 * 1024) {
+      large.append("caf\u00e9 \ud83d\ude00\n");
+    }
+    FileUtils.writeStringToFile(file, large.toString(), StandardCharsets.UTF_8);
+    assertEquals(large.toString(), Utils.readChars(file).toString());
+  }
+
+  @Test
+  public void testUtf8Length() {
+    assertEquals(0, Utils.utf8Length(""));
+    assertEquals("caf\u00e9 \u20ac\ud83d\ude00".getBytes(StandardCharsets.UTF_8).length,
+        Utils.utf8Length("caf\u00e9 \u20ac\ud83d\ude00"));
+    // lone surrogates are replaced by ?
+    assertEquals(2, Utils.utf8Length("\ud83da"));
+  }
+
   @Test
   public void testWriteFileNullSourceFile() throws MojoExecutionException {
     thrown.expect(MojoExecutionException.class);
@@ -100,6 +216,112 @@ public class UtilsTest {
     assertEquals("Some content", fileContent);
   }
 
+  @Test
+  public void testWriteInFileSkipUnchanged() throws MojoExecutionException, URISyntaxException {
+    URL resource = getClass().getResource("/utils/utilsTestFile.txt");
+    File newFile = new File(new File(resource.toURI()).getParentFile(), "unchangedUtilsTestFile.txt");
+    assertTrue(Utils.writeInFile("Some content", newFile, true));
+    long lastModified = newFile.lastModified() - 10000;
+    newFile.setLastModified(lastModified);
+
+    assertFalse(Utils.writeInFile("Some content", newFile, true));
+    assertEquals(lastModified, newFile.lastModified());
+
+    assertTrue(Utils.writeInFile("Some Content", newFile, true));
+    assertEquals("Some Content", Utils.readFile(newFile));
+    assertTrue(Utils.writeInFile("Other content", newFile, true));
+    assertEquals("Other content", Utils.readFile(newFile));
+    assertTrue(Utils.writeInFile("Other content", newFile, false));
+  }
+
+  @Test
+  public void testWriteInFileCharBuffer() throws Exception {
+    File file = new File(new File(getClass().getResource("/utils/utilsTestFile.txt").toURI()).getParentFile(),
+        "charBufferUtilsTestFile.txt");
+    // left by a previous run
+    file.delete();
+    assertTrue(Utils.writeInFile(CharBuffer.wrap("caf\u00e9 \ud83d\ude00"), file, true));
+    long lastModified = file.lastModified() - 10000;
+    file.setLastModified(lastModified);
+    assertFalse(Utils.writeInFile(new StringBuilder("caf\u00e9 \ud83d\ude00"), file, true));
+    assertEquals(lastModified, file.lastModified());
+    assertEquals("caf\u00e9 \ud83d\ude00", Utils.readFile(file));
+  }
+
+  @Test
+  public void testGzip() throws Exception {
+    File dir = new File(getClass().getResource("/utils/utilsTestFile.txt").toURI()).getParentFile();
+    File source = new File(dir, "gzipSource.css");
+    File target = new File(dir, "gzipSource.css.gz");
+    target.delete();
+    FileUtils.writeStringToFile(source, "body { color: red; }\n", StandardCharsets.UTF_8);
+
+    assertTrue(Utils.gzip(source, target));
+    try (InputStream is = new GZIPInputStream(new FileInputStream(target))) {
+      assertEquals("body { color: red; }\n", IOUtils.toString(is, StandardCharsets.UTF_8));
+    }
+    assertEquals(source.lastModified(), target.lastModified());
+    assertFalse(Utils.gzip(source, target));
+
+    source.setLastModified(source.lastModified() - 10000);
+    assertTrue(Utils.gzip(source, target));
+  }
+
+  @Test
+  public void testCopyFileNullSourceFile() throws MojoExecutionException {
+    thrown.expect(MojoExecutionException.class);
+    thrown.expectMessage("source and target files should not be null to be able to copy");
+
+    Utils.copyFile(null, new File("test.txt"), CopyMode.COPY);
+  }
+
+  @Test
+  public void testCopyFile() throws Exception {
+    File source = new File(getClass().getResource("/utils/utilsTestFile.txt").toURI());
+    File target = new File(source.getParentFile(), "copiedUtilsTestFile.txt");
+    Files.deleteIfExists(target.toPath());
+
+    assertTrue(Utils.copyFile(source, target, CopyMode.COPY));
+    assertTrue(FileUtils.contentEquals(source, target));
+    assertEquals(source.lastModified(), target.lastModified());
+    assertFalse(Files.isSameFile(source.toPath(), target.toPath()));
+    assertFalse(Utils.copyFile(source, target, CopyMode.COPY));
+
+    target.setLastModified(source.lastModified() - 10000);
+    assertTrue(Utils.copyFile(source, target, CopyMode.COPY));
+  }
+
+  @Test
+  public void testCopyFileHardlink() throws Exception {
+    File source = new File(getClass().getResource("/utils/utilsTestFile.txt").toURI());
+    File target = new File(source.getParentFile(), "hardlinkedUtilsTestFile.txt");
+    FileUtils.writeStringToFile(target, "previous content", StandardCharsets.UTF_8);
+
+    assertTrue(Utils.copyFile(source, target, CopyMode.HARDLINK));
+    assertTrue(Files.isSameFile(source.toPath(), target.toPath()));
+    assertFalse(Utils.copyFile(source, target, CopyMode.HARDLINK));
+
+    // a copy never writes through the link
+    assertTrue(Utils.copyFile(source, target, CopyMode.COPY));
+    assertFalse(Files.isSameFile(source.toPath(), target.toPath()));
+    assertTrue(FileUtils.contentEquals(source, target));
+  }
+
+  @Test
+  public void testCopyFileSymlink() throws Exception {
+    File source = new File(getClass().getResource("/utils/utilsTestFile.txt").toURI());
+    File target = new File(source.getParentFile(), "symlinkedUtilsTestFile.txt");
+    Files.deleteIfExists(target.toPath());
+
+    assertTrue(Utils.copyFile(source, target, CopyMode.SYMLINK));
+    assertTrue(Files.isSymbolicLink(target.toPath()));
+    assertTrue(Files.isSameFile(source.toPath(), target.toPath()));
+    assertFalse(Utils.copyFile(source, target, CopyMode.SYMLINK));
+
+    Utils.unlink(source, target);
+    assertFalse(target.exists());
+  }
+
   @Test
   public void testMkDirsNullSourceDir() throws MojoExecutionException, URISyntaxException {
     thrown.expect(MojoExecutionException.class);
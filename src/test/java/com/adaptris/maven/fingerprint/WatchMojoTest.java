@@ -0,0 +1,131 @@
+package com.adaptris.maven.fingerprint;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class WatchMojoTest {
+  private static final String INPUT_DIR = "target/test-classes/to-parse";
+  private static final String SOURCE_DIR = "target/test-classes/watched";
+  private static final String OUTPUT_DIR = "target/test-classes/fingerprinted_testWatch";
+
+  private WatchMojo watchMojo;
+  private Thread thread;
+  private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+  @Before
+  public void setUp() throws Exception {
+    File sourceDirectory = new File(SOURCE_DIR);
+    FileUtils.deleteDirectory(sourceDirectory);
+    FileUtils.deleteDirectory(new File(OUTPUT_DIR));
+    FileUtils.copyDirectory(new File(INPUT_DIR), sourceDirectory, true);
+
+    watchMojo = new WatchMojo();
+    setField("sourceDirectory", sourceDirectory);
+    setField("targetDirectory", new File(OUTPUT_DIR));
+    setField("includes", Arrays.asList("**/*.html", "**/*.css", "**/*.js"));
+    setField("excludes", Arrays.asList("ignore/**"));
+    setField("excludeResources", Arrays.asList("//"));
+    setField("watchDebounce", 20L);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    if (thread != null) {
+      thread.interrupt();
+      thread.join(10000);
+      assertFalse(thread.isAlive());
+    }
+  }
+
+  @Test
+  public void testWatch() throws Exception {
+    start();
+    File page = new File(OUTPUT_DIR, "dummy-file-for-testing.html");
+    File css = new File(OUTPUT_DIR, "css/style.css");
+
+    // the change of an image is propagated to the css and to the pages referencing the css
+    File image = new File(SOURCE_DIR, "images/image.png");
+    FileUtils.writeByteArrayToFile(image, new byte[] { 1, 2, 3 });
+    String fingerprint = DigestUtils.md5Hex(new byte[] { 1, 2, 3 });
+    // the write may be seen as several changes
+    await(() -> Utils.readFile(css).contains("url(\"../images/image.png?" + fingerprint + "\")")
+        && Utils.readFile(page).contains("href=\"css/style.css?" + Utils.generateMd5Fingerprint(css) + "\""));
+    assertTrue(FileUtils.contentEquals(image, new File(OUTPUT_DIR, "images/image.png")));
+
+    // a new page is processed
+    File newPage = new File(OUTPUT_DIR, "new.html");
+    FileUtils.writeStringToFile(new File(SOURCE_DIR, "new.html"), "<img src=\"images/image.png\" />",
+        StandardCharsets.UTF_8);
+    await(() -> newPage.exists() && Utils.readFile(newPage).contains("images/image.png?" + fingerprint));
+
+    // a deleted resource is removed from the target directory
+    File favicon = new File(OUTPUT_DIR, "favicon2.ico");
+    assertTrue(favicon.exists());
+    assertTrue(new File(SOURCE_DIR, "favicon2.ico").delete());
+    await(() -> !favicon.exists());
+    assertNull(failure.get());
+  }
+
+  @Test
+  public void testWatchFailure() throws Exception {
+    setField("minifyExtensions", Arrays.asList("js"));
+    start();
+    File script = new File(SOURCE_DIR, "js/script.js");
+    File target = new File(OUTPUT_DIR, "js/script.js");
+
+    // partially saved, the error doesn't stop the watch
+    FileUtils.writeStringToFile(script, "var a = function(", StandardCharsets.UTF_8);
+    Thread.sleep(500);
+    assertTrue(thread.isAlive());
+    FileUtils.writeStringToFile(script, "var saved = 1;", StandardCharsets.UTF_8);
+    await(() -> Utils.readFile(target).equals("var saved=1;"));
+    assertNull(failure.get());
+  }
+
+  private void start() throws Exception {
+    thread = new Thread(() -> {
+      try {
+        watchMojo.execute();
+      } catch (Throwable e) {
+        failure.set(e);
+      }
+    });
+    thread.start();
+    assertTrue(watchMojo.watching.await(10, TimeUnit.SECONDS));
+  }
+
+  private void await(Callable<Boolean> condition) throws Exception {
+    long deadline = System.currentTimeMillis() + 10000;
+    while (!condition.call()) {
+      assertNull(failure.get());
+      assertTrue("timed out", System.currentTimeMillis() < deadline);
+      Thread.sleep(10);
+    }
+  }
+
+  private void setField(String name, Object value) throws Exception {
+    Field field;
+    try {
+      field = WatchMojo.class.getDeclaredField(name);
+    } catch (NoSuchFieldException e) {
+      field = FingerprintMojo.class.getDeclaredField(name);
+    }
+    field.setAccessible(true);
+    field.set(watchMojo, value);
+  }
+}